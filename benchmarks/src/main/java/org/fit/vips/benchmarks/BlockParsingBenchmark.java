@@ -0,0 +1,41 @@
+/*
+ * Tomas Popela, 2012
+ * VIPS - Visual Internet Page Segmentation
+ * Module - BlockParsingBenchmark.java
+ */
+
+package org.fit.vips.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.fit.vips.VipsBlock;
+import org.fit.vips.VipsParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures visual blocks detection (VipsParser.parse()) in first round.
+ * @author Tomas Popela
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class BlockParsingBenchmark {
+
+	@Benchmark
+	public VipsBlock parse(PageState state)
+	{
+		VipsParser parser = new VipsParser(state.viewport, PageState.SIZE_TRESHOLD_WIDTH, PageState.SIZE_TRESHOLD_HEIGHT);
+		parser.parse();
+
+		return parser.getVipsBlocks();
+	}
+}
@@ -0,0 +1,58 @@
+/*
+ * Tomas Popela, 2012
+ * VIPS - Visual Internet Page Segmentation
+ * Module - NormalizationBenchmark.java
+ */
+
+package org.fit.vips.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.fit.vips.VisualStructure;
+import org.fit.vips.VisualStructureConstructor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures normalization of separators weights (normalization gives the same
+ * result when it's repeated, so one structure is used for all invocations).
+ * @author Tomas Popela
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Benchmark)
+public class NormalizationBenchmark {
+
+	private VisualStructureConstructor _constructor;
+
+	@Setup(Level.Trial)
+	public void setUp(PageState state)
+	{
+		_constructor = new VisualStructureConstructor(8);
+		_constructor.setGraphicsOutput(false);
+		_constructor.setVipsBlocks(state.vipsBlocks);
+		_constructor.setPageSize(state.viewport.getWidth(), state.viewport.getHeight());
+		_constructor.constructVisualStructure();
+	}
+
+	@Benchmark
+	public VisualStructure normalize()
+	{
+		_constructor.normalizeSeparatorsMinMax();
+
+		return _constructor.getVisualStructure();
+	}
+}
@@ -0,0 +1,70 @@
+/*
+ * Tomas Popela, 2012
+ * VIPS - Visual Internet Page Segmentation
+ * Module - OutputBenchmark.java
+ */
+
+package org.fit.vips.benchmarks;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.fit.vips.VipsOutput;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures writing of final visual structure to XML (VipsOutput.writeXML()).
+ * @author Tomas Popela
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Benchmark)
+public class OutputBenchmark {
+
+	private File _outputFolder;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception
+	{
+		_outputFolder = Files.createTempDirectory("vips-benchmark").toFile();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		File[] files = _outputFolder.listFiles();
+		if (files != null)
+		{
+			for (File file : files)
+				file.delete();
+		}
+		_outputFolder.delete();
+	}
+
+	@Benchmark
+	public VipsOutput writeXML(PageState state)
+	{
+		VipsOutput output = new VipsOutput(8);
+		output.setOutputFolder(_outputFolder.getPath());
+		output.setOutputFileName(state.page);
+		output.writeXML(state.visualStructure, state.viewport);
+
+		return output;
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ * Tomas Popela, 2012
+ * VIPS - Visual Internet Page Segmentation
+ * Module - PageState.java
+ */
+
+package org.fit.vips.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.List;
+
+import org.fit.cssbox.layout.Viewport;
+import org.fit.vips.VipsBlock;
+import org.fit.vips.VipsEngine;
+import org.fit.vips.VipsParser;
+import org.fit.vips.VipsSession;
+import org.fit.vips.VisualStructure;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Page from bundled corpus, that is rendered and segmented once per trial.
+ * Benchmarks then measure single phases on its results.
+ * @author Tomas Popela
+ *
+ */
+@State(Scope.Benchmark)
+public class PageState {
+
+	// size tresholds used in first round of segmentation
+	public static final int SIZE_TRESHOLD_WIDTH = 350;
+	public static final int SIZE_TRESHOLD_HEIGHT = 400;
+
+	@Param({ "small", "medium", "huge" })
+	public String page;
+
+	public byte[] source;
+	public URL baseUrl;
+	public Viewport viewport;
+	public VipsBlock vipsBlocks;
+	public List<VipsBlock> visualBlocks;
+	public VisualStructure visualStructure;
+
+	/**
+	 * Reads page from corpus
+	 * @param name Name of page
+	 * @return Page's HTML source
+	 * @throws IOException
+	 */
+	private byte[] readPage(String name) throws IOException
+	{
+		InputStream input = PageState.class.getResourceAsStream("/corpus/" + name + ".html");
+		if (input == null)
+			throw new IOException("Page " + name + " is not in corpus!");
+
+		try
+		{
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int length;
+			while ((length = input.read(buffer)) != -1)
+				output.write(buffer, 0, length);
+
+			return output.toByteArray();
+		}
+		finally
+		{
+			input.close();
+		}
+	}
+
+	/**
+	 * Creates engine used for whole segmentation
+	 * @return Engine
+	 */
+	public static VipsEngine createEngine()
+	{
+		return new VipsEngine.Builder()
+				.enableXmlOutput(false)
+				.setPredefinedDoC(8)
+				.setSizeTreshold(SIZE_TRESHOLD_WIDTH, SIZE_TRESHOLD_HEIGHT)
+				.build();
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception
+	{
+		source = readPage(page);
+		baseUrl = PageState.class.getResource("/corpus/" + page + ".html");
+
+		VipsSession session = createEngine().createSession(source, baseUrl);
+		session.segment();
+
+		viewport = session.getViewport();
+		visualStructure = session.getVisualStructure();
+
+		VipsParser parser = new VipsParser(viewport, SIZE_TRESHOLD_WIDTH, SIZE_TRESHOLD_HEIGHT);
+		parser.parse();
+		vipsBlocks = parser.getVipsBlocks();
+		visualBlocks = parser.getVisualBlocks();
+	}
+}
@@ -0,0 +1,44 @@
+/*
+ * Tomas Popela, 2012
+ * VIPS - Visual Internet Page Segmentation
+ * Module - SegmentationBenchmark.java
+ */
+
+package org.fit.vips.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.fit.vips.VipsEngine;
+import org.fit.vips.VisualStructure;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures whole pipeline from HTML source (parsing, styles, layout and all
+ * rounds of segmentation) without XML output.
+ * @author Tomas Popela
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Benchmark)
+public class SegmentationBenchmark {
+
+	private final VipsEngine _engine = PageState.createEngine();
+
+	@Benchmark
+	public VisualStructure segment(PageState state) throws Exception
+	{
+		return _engine.createSession(state.source, state.baseUrl).segment();
+	}
+}
@@ -0,0 +1,62 @@
+/*
+ * Tomas Popela, 2012
+ * VIPS - Visual Internet Page Segmentation
+ * Module - SeparatorDetectionBenchmark.java
+ */
+
+package org.fit.vips.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.fit.vips.VipsSeparatorDetector;
+import org.fit.vips.VipsSeparatorGraphicsDetector;
+import org.fit.vips.VipsSeparatorNonGraphicsDetector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures detection of horizontal and vertical separators among all visual
+ * blocks from first round, for both detector implementations.
+ * @author Tomas Popela
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Benchmark)
+public class SeparatorDetectionBenchmark {
+
+	@Param({ "nonGraphics", "graphics" })
+	public String detector;
+
+	@Benchmark
+	public VipsSeparatorDetector detect(PageState state)
+	{
+		int width = state.viewport.getWidth();
+		int height = state.viewport.getHeight();
+		VipsSeparatorDetector separatorDetector;
+
+		if (detector.equals("graphics"))
+			separatorDetector = new VipsSeparatorGraphicsDetector(width, height);
+		else
+			separatorDetector = new VipsSeparatorNonGraphicsDetector(width, height);
+
+		separatorDetector.setCleanUpSeparators(3);
+		separatorDetector.setVipsBlock(state.vipsBlocks);
+		separatorDetector.setVisualBlocks(state.visualBlocks);
+		separatorDetector.detectHorizontalSeparators();
+		separatorDetector.detectVerticalSeparators();
+
+		return separatorDetector;
+	}
+}
@@ -0,0 +1,45 @@
+/*
+ * Tomas Popela, 2012
+ * VIPS - Visual Internet Page Segmentation
+ * Module - StructureConstructionBenchmark.java
+ */
+
+package org.fit.vips.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.fit.vips.VisualStructure;
+import org.fit.vips.VisualStructureConstructor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures construction of visual structure from blocks of first round
+ * (VisualStructureConstructor.constructVisualStructure()).
+ * @author Tomas Popela
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class StructureConstructionBenchmark {
+
+	@Benchmark
+	public VisualStructure construct(PageState state)
+	{
+		VisualStructureConstructor constructor = new VisualStructureConstructor(8);
+		constructor.setGraphicsOutput(false);
+		constructor.setVipsBlocks(state.vipsBlocks);
+		constructor.setPageSize(state.viewport.getWidth(), state.viewport.getHeight());
+		constructor.constructVisualStructure();
+
+		return constructor.getVisualStructure();
+	}
+}
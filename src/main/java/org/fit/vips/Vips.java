@@ -6,28 +6,12 @@
 
 package org.fit.vips;
 
-import java.awt.image.BufferedImage;
 import java.io.File;
-import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
-import java.io.PrintStream;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.net.URLConnection;
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
-
-import javax.imageio.ImageIO;
-
-import org.fit.cssbox.css.CSSNorm;
-import org.fit.cssbox.css.DOMAnalyzer;
-import org.fit.cssbox.io.DOMSource;
-import org.fit.cssbox.io.DefaultDOMSource;
-import org.fit.cssbox.io.DefaultDocumentSource;
-import org.fit.cssbox.io.DocumentSource;
-import org.fit.cssbox.layout.BrowserCanvas;
-import org.fit.cssbox.layout.Viewport;
+import java.util.concurrent.ForkJoinPool;
+
 import org.w3c.dom.Document;
 
 /**
@@ -37,22 +21,25 @@ import org.w3c.dom.Document;
  */
 public class Vips {
 	private URL _url = null;
-	private DOMAnalyzer _domAnalyzer = null;
-	private BrowserCanvas _browserCanvas = null;
-	private Viewport _viewport = null;
 
 	private boolean _graphicsOutput = false;
 	private boolean _outputToFolder = false;
 	private boolean _outputEscaping = true;
+	private boolean _adaptiveSegmentation = false;
+	private boolean _incrementalParsing = false;
+	private boolean _sweepLineDetection = false;
+	private VipsListener _listener = null;
 	private int _pDoC = 11;
+	private int[] _pDoCs = new int[0];
+	private VipsProfile _profile = VipsProfile.FULL;
+	private boolean _pruning = VipsProfile.FULL.isPruningEnabled();
+	private boolean _parallelDivision = false;
+	private int[] _region = null;
+	private String _regionSelector = null;
 	private String _filename = "";
 	private	int sizeTresholdWidth = 350;
 	private	int sizeTresholdHeight = 400;
 
-	private PrintStream originalOut = null;
-	long startTime = 0;
-	long endTime = 0;
-
 	/**
 	 * Default constructor
 	 */
@@ -87,6 +74,46 @@ public class Vips {
 		_outputEscaping = enable;
 	}
 
+	/**
+	 * Enables or disables adaptive segmentation, that skips rounds, which
+	 * can't change the structure.
+	 * @param enable True for enable, otherwise false.
+	 */
+	public void enableAdaptiveSegmentation(boolean enable)
+	{
+		_adaptiveSegmentation = enable;
+	}
+
+	/**
+	 * Enables or disables incremental parsing, that keeps block tree between
+	 * rounds and divides again only blocks bigger than new size treshold.
+	 * @param enable True for enable, otherwise false.
+	 */
+	public void enableIncrementalParsing(boolean enable)
+	{
+		_incrementalParsing = enable;
+	}
+
+	/**
+	 * Enables or disables detection of separators as gaps between sorted
+	 * visual blocks.
+	 * @param enable True for enable, otherwise false.
+	 */
+	public void enableSweepLineDetection(boolean enable)
+	{
+		_sweepLineDetection = enable;
+	}
+
+	/**
+	 * Sets listener, that receives durations of segmentation phases and
+	 * counters of page.
+	 * @param listener Listener or null
+	 */
+	public void setListener(VipsListener listener)
+	{
+		_listener = listener;
+	}
+
 	/**
 	 * Sets permitted degree of coherence (pDoC) value.
 	 * @param value pDoC value.
@@ -105,206 +132,121 @@ public class Vips {
 	}
 
 	/**
-	 * Sets web page's URL
-	 * @param url Url
-	 * @throws MalformedURLException
+	 * Sets several pDoC values. Page is segmented only once and output
+	 * is written for every value to file with -pdocN suffix.
+	 * @param values pDoC values
 	 */
-	public void setUrl(String url)
+	public void setPredefinedDoCs(int... values)
 	{
-		try
-		{
-			if (url.startsWith("http://") || url.startsWith("https://"))
-				_url = new URL(url);
-			else
-				_url = new URL("http://" + url);
-		}
-		catch (Exception e)
-		{
-			System.err.println("Invalid address: " + url);
-		}
+		_pDoCs = values.clone();
 	}
 
 	/**
-	 * Parses a builds DOM tree from page source.
-	 * @param urlStream Input stream with page source.
+	 * Sets profile of VIPS rules (e.g. VipsProfile.FAST for bulk processing).
+	 * @param profile Profile
 	 */
-	private void getDomTree(URL urlStream)
+	public void setProfile(VipsProfile profile)
 	{
-		DocumentSource docSource = null;
-		try
-		{
-			docSource = new DefaultDocumentSource(urlStream);
-			DOMSource parser = new DefaultDOMSource(docSource);
-
-			Document domTree = parser.parse();
-			_domAnalyzer = new DOMAnalyzer(domTree, _url);
-			_domAnalyzer.attributesToStyles();
-			_domAnalyzer.addStyleSheet(null, CSSNorm.stdStyleSheet(), DOMAnalyzer.Origin.AGENT);
-			_domAnalyzer.addStyleSheet(null, CSSNorm.userStyleSheet(), DOMAnalyzer.Origin.AGENT);
-			_domAnalyzer.getStyleSheets();
-		}
-		catch (Exception e)
-		{
-			System.err.print(e.getMessage());
-		}
+		_profile = profile;
+		_pruning = profile.isPruningEnabled();
 	}
 
 	/**
-	 * Gets page's viewport
+	 * Enables or disables pruning of hidden subtrees. Default value is given
+	 * by profile, so this has to be called after setProfile().
+	 * @param enable True for enable, otherwise false.
 	 */
-	private void getViewport()
+	public void enablePruning(boolean enable)
 	{
-		_browserCanvas = new BrowserCanvas(_domAnalyzer.getRoot(),
-				_domAnalyzer, new java.awt.Dimension(1000, 600), _url);
-		_viewport = _browserCanvas.getViewport();
+		_pruning = enable;
 	}
 
 	/**
-	 * Exports rendered page to image.
+	 * Enables or disables parallel division of blocks (in common fork/join
+	 * pool). Results are same as with sequential division.
+	 * @param enable True for enable, otherwise false.
 	 */
-	private void exportPageToImage()
+	public void enableParallelDivision(boolean enable)
 	{
-		try
-		{
-			BufferedImage page = _browserCanvas.getImage();
-			String filename = System.getProperty("user.dir") + "/page.png";
-			ImageIO.write(page, "png", new File(filename));
-		} catch (Exception e)
-		{
-			System.err.println("Error: " + e.getMessage());
-			e.printStackTrace();
-		}
+		_parallelDivision = enable;
 	}
 
 	/**
-	 * Generates folder filename
-	 * @return Folder filename
+	 * Restricts segmentation to rectangle of page.
+	 * @param x X coordinate
+	 * @param y Y coordinate
+	 * @param width Width
+	 * @param height Height
 	 */
-	private String generateFolderName()
+	public void setRegion(int x, int y, int width, int height)
 	{
-		String outputFolder = "";
-
-		Calendar cal = Calendar.getInstance();
-		SimpleDateFormat sdf = new SimpleDateFormat("dd_MM_yyyy_HH_mm_ss");
-		outputFolder += sdf.format(cal.getTime());
-		outputFolder += "_";
-		outputFolder += _url.getHost().replaceAll("\\.", "_").replaceAll("/", "_");
-
-		return outputFolder;
+		_region = new int[] { x, y, width, height };
 	}
 
 	/**
-	 * Performs page segmentation.
+	 * Restricts segmentation to subtree of first element matching CSS
+	 * selector (e.g. #main).
+	 * @param selector Selector or null for whole page
+	 * @throws IllegalArgumentException When selector isn't valid
 	 */
-	private void performSegmentation()
+	public void setRegion(String selector)
 	{
+		// parse selector now, so invalid selector is rejected here
+		if (selector != null)
+			new VipsElementSelector(selector);
 
-		startTime = System.nanoTime();
-		int numberOfIterations = 10;
-		int pageWidth = _viewport.getWidth();
-		int pageHeight = _viewport.getHeight();
-
-		if (_graphicsOutput)
-			exportPageToImage();
-
-		VipsSeparatorGraphicsDetector detector;
-		VipsParser vipsParser = new VipsParser(_viewport);
-		VisualStructureConstructor constructor = new VisualStructureConstructor(_pDoC);
-		constructor.setGraphicsOutput(_graphicsOutput);
+		_regionSelector = selector;
+	}
 
-		for (int iterationNumber = 1; iterationNumber < numberOfIterations+1; iterationNumber++)
+	/**
+	 * Sets web page's URL
+	 * @param url Url
+	 * @throws MalformedURLException
+	 */
+	public void setUrl(String url)
+	{
+		try
 		{
-			detector = new VipsSeparatorGraphicsDetector(pageWidth, pageHeight);
-
-			//visual blocks detection
-			vipsParser.setSizeTresholdHeight(sizeTresholdHeight);
-			vipsParser.setSizeTresholdWidth(sizeTresholdWidth);
-
-			vipsParser.parse();
-
-			VipsBlock vipsBlocks = vipsParser.getVipsBlocks();
-
-			if (iterationNumber == 1)
-			{
-				if (_graphicsOutput)
-				{
-					// in first round we'll export global separators
-					detector.setVipsBlock(vipsBlocks);
-					detector.fillPool();
-					detector.saveToImage("blocks" + iterationNumber);
-					detector.setCleanUpSeparators(0);
-					detector.detectHorizontalSeparators();
-					detector.detectVerticalSeparators();
-					detector.exportHorizontalSeparatorsToImage();
-					detector.exportVerticalSeparatorsToImage();
-					detector.exportAllToImage();
-				}
-
-				// visual structure construction
-				constructor.setVipsBlocks(vipsBlocks);
-				constructor.setPageSize(pageWidth, pageHeight);
-			}
+			if (url.startsWith("http://") || url.startsWith("https://"))
+				_url = new URL(url);
 			else
-			{
-				vipsBlocks = vipsParser.getVipsBlocks();
-				constructor.updateVipsBlocks(vipsBlocks);
-
-				if (_graphicsOutput)
-				{
-					detector.setVisualBlocks(constructor.getVisualBlocks());
-					detector.fillPool();
-					detector.saveToImage("blocks" + iterationNumber);
-				}
-			}
-
-			// visual structure construction
-			constructor.constructVisualStructure();
-
-			// prepare tresholds for next iteration
-			if (iterationNumber <= 5 )
-			{
-				sizeTresholdHeight -= 50;
-				sizeTresholdWidth -= 50;
-
-			}
-			if (iterationNumber == 6)
-			{
-				sizeTresholdHeight = 100;
-				sizeTresholdWidth = 100;
-			}
-			if (iterationNumber == 7)
-			{
-				sizeTresholdHeight = 80;
-				sizeTresholdWidth = 80;
-			}
-			if (iterationNumber == 8)
-			{
-				sizeTresholdHeight = 40;
-				sizeTresholdWidth = 10;
-			}
-			if (iterationNumber == 9)
-			{
-				sizeTresholdHeight = 1;
-				sizeTresholdWidth = 1;
-			}
-
+				_url = new URL("http://" + url);
 		}
+		catch (Exception e)
+		{
+			System.err.println("Invalid address: " + url);
+		}
+	}
 
-		//		constructor.normalizeSeparatorsSoftMax();
-		constructor.normalizeSeparatorsMinMax();
-
-		VipsOutput vipsOutput = new VipsOutput(_pDoC);
-		vipsOutput.setEscapeOutput(_outputEscaping);
-		vipsOutput.setOutputFileName(_filename);
-		vipsOutput.writeXML(constructor.getVisualStructure(), _viewport);
-
-		endTime = System.nanoTime();
-
-		long diff = endTime - startTime;
-
-		System.out.println("Execution time of VIPS: " + diff + " ns; " +
-				(diff / 1000000.0) + " ms; " +
-				(diff / 1000000000.0) + " sec");
+	/**
+	 * Creates segmentation engine with current preferences.
+	 * @return Segmentation engine
+	 */
+	private VipsEngine createEngine()
+	{
+		VipsEngine.Builder builder = new VipsEngine.Builder()
+				.enableGraphicsOutput(_graphicsOutput)
+				.enableOutputToFolder(_outputToFolder)
+				.enableOutputEscaping(_outputEscaping)
+				.enableAdaptiveSegmentation(_adaptiveSegmentation)
+				.enableIncrementalParsing(_incrementalParsing)
+				.enableSweepLineDetection(_sweepLineDetection)
+				.setListener(_listener)
+				.setPredefinedDoC(_pDoC)
+				.setPredefinedDoCs(_pDoCs)
+				.setProfile(_profile)
+				.enablePruning(_pruning)
+				.setForkJoinPool(_parallelDivision ? ForkJoinPool.commonPool() : null)
+				.setSizeTreshold(sizeTresholdWidth, sizeTresholdHeight)
+				.setRegionSelector(_regionSelector);
+
+		if (!_filename.equals(""))
+			builder.setOutputFileName(_filename);
+
+		if (_region != null)
+			builder.setRegion(_region[0], _region[1], _region[2], _region[3]);
+
+		return builder.build();
 	}
 
 	/**
@@ -319,29 +261,54 @@ public class Vips {
 	}
 
 	/**
-	 * Restores stdout
+	 * Starts segmentation of page read from stream (no connection is opened)
+	 * @param input Page's HTML source
+	 * @param baseUrl Page's base URL used for relative resources
 	 */
-	private void restoreOut()
+	public void startSegmentation(InputStream input, URL baseUrl)
 	{
-		if (originalOut != null)
+		_url = baseUrl;
+		runSession(createEngine().createSession(input, baseUrl));
+	}
+
+	/**
+	 * Starts segmentation of page from HTML source (no connection is opened)
+	 * @param input Page's HTML source
+	 * @param baseUrl Page's base URL used for relative resources
+	 */
+	public void startSegmentation(byte[] input, URL baseUrl)
+	{
+		_url = baseUrl;
+		runSession(createEngine().createSession(input, baseUrl));
+	}
+
+	/**
+	 * Starts segmentation of page stored in local file
+	 * @param file HTML file
+	 */
+	public void startSegmentation(File file)
+	{
+		try
+		{
+			VipsSession session = createEngine().createSession(file);
+			_url = session.getUrl();
+			runSession(session);
+		}
+		catch (MalformedURLException e)
 		{
-			System.setOut(originalOut);
+			System.err.println("Invalid file: " + file);
 		}
 	}
 
 	/**
-	 * Redirects stdout to nowhere
+	 * Starts segmentation of already parsed page (HTML parsing is skipped)
+	 * @param document Page's DOM tree
+	 * @param baseUrl Page's base URL used for relative resources
 	 */
-	private void redirectOut()
+	public void startSegmentation(Document document, URL baseUrl)
 	{
-		originalOut = System.out;
-		System.setOut(new PrintStream(new OutputStream() {
-			@Override
-			public void write(int b) throws IOException
-			{
-
-			}
-		}));
+		_url = baseUrl;
+		runSession(createEngine().createSession(document, baseUrl));
 	}
 
 	/**
@@ -349,42 +316,28 @@ public class Vips {
 	 * @throws Exception
 	 */
 	public void startSegmentation()
+	{
+		runSession(createEngine().createSession(_url));
+	}
+
+	/**
+	 * Runs segmentation session and prints its execution time
+	 * @param session Session
+	 */
+	private void runSession(VipsSession session)
 	{
 		try
 		{
-			_url.openConnection();
-
-			redirectOut();
-
-			getDomTree(_url);
-			startTime = System.nanoTime();
-			getViewport();
-			restoreOut();
-
-			String outputFolder = "";
-			String oldWorkingDirectory = "";
-			String newWorkingDirectory = "";
-
-			if (_outputToFolder)
-			{
-				outputFolder = generateFolderName();
-
-				if (!new File(outputFolder).mkdir())
-				{
-					System.err.println("Something goes wrong during directory creation!");
-				}
-				else
-				{
-					oldWorkingDirectory = System.getProperty("user.dir");
-					newWorkingDirectory += oldWorkingDirectory + "/" + outputFolder + "/";
-					System.setProperty("user.dir", newWorkingDirectory);
-				}
-			}
-
-			performSegmentation();
-
-			if (_outputToFolder)
-				System.setProperty("user.dir", oldWorkingDirectory);
+			session.segment();
+
+			long diff = session.getExecutionTime();
+
+			System.out.println("Execution time of VIPS: " + diff + " ns; " +
+					(diff / 1000000.0) + " ms; " +
+					(diff / 1000000000.0) + " sec");
+
+			if (_adaptiveSegmentation)
+				System.out.println("Number of rounds: " + session.getIterations());
 		}
 		catch (Exception e)
 		{
@@ -0,0 +1,156 @@
+/*
+ * Tomas Popela, 2012
+ * VIPS - Visual Internet Page Segmentation
+ * Module - VipsBatchResult.java
+ */
+
+package org.fit.vips;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Summary of batch segmentation.
+ * @author Tomas Popela
+ *
+ */
+public class VipsBatchResult {
+
+	private int _succeeded = 0;
+	private int _failed = 0;
+	private int _timedOut = 0;
+	private long _elapsedTime = 0;
+	// failed pages and reasons of failure (keyed by number of page in input)
+	private final Map<Integer, String> _failedPages = new LinkedHashMap<Integer, String>();
+	private final Map<Integer, String> _failures = new LinkedHashMap<Integer, String>();
+	// pages, that were still running, when batch ended
+	private final Map<Integer, String> _abandonedPages = new LinkedHashMap<Integer, String>();
+
+	synchronized void addSuccess()
+	{
+		_succeeded++;
+	}
+
+	synchronized void addFailure(int number, String page, String reason)
+	{
+		_failed++;
+		_failedPages.put(number, page);
+		_failures.put(number, reason);
+	}
+
+	synchronized void addTimeout(int number, String page)
+	{
+		_timedOut++;
+		_failedPages.put(number, page);
+		_failures.put(number, "Deadline exceeded");
+	}
+
+	synchronized void addAbandoned(int number, String page)
+	{
+		_timedOut++;
+		_failedPages.put(number, page);
+		_failures.put(number, "Deadline exceeded, page was still running when batch ended");
+		_abandonedPages.put(number, page);
+	}
+
+	synchronized void setElapsedTime(long elapsedTime)
+	{
+		_elapsedTime = elapsedTime;
+	}
+
+	/**
+	 * Returns number of successfully segmented pages
+	 * @return Number of pages
+	 */
+	public synchronized int getSucceeded()
+	{
+		return _succeeded;
+	}
+
+	/**
+	 * Returns number of pages that failed with an error
+	 * @return Number of pages
+	 */
+	public synchronized int getFailed()
+	{
+		return _failed;
+	}
+
+	/**
+	 * Returns number of pages that exceeded their deadline
+	 * @return Number of pages
+	 */
+	public synchronized int getTimedOut()
+	{
+		return _timedOut;
+	}
+
+	/**
+	 * Returns number of all processed pages
+	 * @return Number of pages
+	 */
+	public synchronized int getProcessed()
+	{
+		return _succeeded + _failed + _timedOut;
+	}
+
+	/**
+	 * Returns reasons of failure of failed and timed out pages
+	 * @return Map of page number (position in input, starting from 1) to
+	 * reason
+	 */
+	public synchronized Map<Integer, String> getFailures()
+	{
+		return Collections.unmodifiableMap(new LinkedHashMap<Integer, String>(_failures));
+	}
+
+	/**
+	 * Returns addresses of failed and timed out pages
+	 * @return Map of page number (position in input, starting from 1) to
+	 * address of page
+	 */
+	public synchronized Map<Integer, String> getFailedPages()
+	{
+		return Collections.unmodifiableMap(new LinkedHashMap<Integer, String>(_failedPages));
+	}
+
+	/**
+	 * Returns pages, that were still running after their deadline, when
+	 * batch ended (their workers were abandoned)
+	 * @return Map of page number (position in input, starting from 1) to
+	 * address of page
+	 */
+	public synchronized Map<Integer, String> getAbandonedPages()
+	{
+		return Collections.unmodifiableMap(new LinkedHashMap<Integer, String>(_abandonedPages));
+	}
+
+	/**
+	 * Returns wall-clock time of whole batch
+	 * @return Elapsed time in nanoseconds
+	 */
+	public synchronized long getElapsedTime()
+	{
+		return _elapsedTime;
+	}
+
+	/**
+	 * Returns throughput of batch
+	 * @return Successfully segmented pages per second
+	 */
+	public synchronized double getPagesPerSecond()
+	{
+		if (_elapsedTime == 0)
+			return 0;
+
+		return _succeeded / (_elapsedTime / 1000000000.0);
+	}
+
+	@Override
+	public synchronized String toString()
+	{
+		return String.format("Pages: %d, succeeded: %d, failed: %d, timed out: %d, time: %.3f s, throughput: %.2f pages/s",
+				getProcessed(), _succeeded, _failed, _timedOut, _elapsedTime / 1000000000.0, getPagesPerSecond());
+	}
+}
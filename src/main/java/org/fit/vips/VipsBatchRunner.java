@@ -0,0 +1,348 @@
+/*
+ * Tomas Popela, 2012
+ * VIPS - Visual Internet Page Segmentation
+ * Module - VipsBatchRunner.java
+ */
+
+package org.fit.vips;
+
+import java.io.InterruptedIOException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Segments many pages on bounded pool of worker threads.
+ * <p>
+ * Submission blocks when all workers are busy and the queue is full, so
+ * the input can be arbitrarily long. Every page has its own wall-clock
+ * deadline, after which its worker is interrupted. Page's fetch has
+ * timeouts derived from the deadline, but layout can't be interrupted, so
+ * workers of pages, that are still running long after their deadline, are
+ * abandoned at the end of batch.
+ * @author Tomas Popela
+ *
+ */
+public class VipsBatchRunner {
+
+	private final VipsEngine _engine;
+	private int _threads = Runtime.getRuntime().availableProcessors();
+	private int _queueSize = 0;
+	private long _timeout = 0;
+
+	/**
+	 * Creates runner that segments pages with given engine.
+	 * @param engine Engine with configuration
+	 */
+	public VipsBatchRunner(VipsEngine engine)
+	{
+		this._engine = engine;
+	}
+
+	/**
+	 * Sets number of worker threads.
+	 * @param threads Number of threads
+	 */
+	public void setThreads(int threads)
+	{
+		if (threads < 1)
+		{
+			System.err.println("Number of threads must be positive! Not " + threads + "!");
+			return;
+		}
+
+		this._threads = threads;
+	}
+
+	/**
+	 * Sets number of pages waiting for free worker. When it's zero, queue
+	 * has same size as worker pool.
+	 * @param queueSize Size of queue
+	 */
+	public void setQueueSize(int queueSize)
+	{
+		this._queueSize = queueSize;
+	}
+
+	/**
+	 * Sets per-page deadline.
+	 * @param timeout Deadline in milliseconds, zero for no deadline
+	 */
+	public void setTimeout(long timeout)
+	{
+		this._timeout = timeout;
+	}
+
+	/**
+	 * Segments all given pages and waits until they're finished.
+	 * @param urls Addresses of pages
+	 * @return Summary of batch
+	 */
+	public VipsBatchResult run(Iterable<String> urls)
+	{
+		final VipsBatchResult result = new VipsBatchResult();
+		final int queueSize = (_queueSize > 0) ? _queueSize : _threads;
+		final Semaphore slots = new Semaphore(_threads + queueSize);
+		final Set<PageTask> running = ConcurrentHashMap.newKeySet();
+
+		ThreadPoolExecutor workers = new ThreadPoolExecutor(_threads, _threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(queueSize), new WorkerThreadFactory("vips-worker-"));
+		final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(new WorkerThreadFactory("vips-watchdog-"));
+
+		long startTime = System.nanoTime();
+		int pageNumber = 0;
+
+		try
+		{
+			for (String url : urls)
+			{
+				slots.acquire();
+				pageNumber++;
+				try
+				{
+					workers.execute(new PageTask(url, pageNumber, result, watchdog, slots, running));
+				}
+				catch (RuntimeException e)
+				{
+					slots.release();
+					throw e;
+				}
+			}
+
+			workers.shutdown();
+			while (!workers.awaitTermination(1, TimeUnit.SECONDS))
+			{
+				if (workers.getQueue().isEmpty() && isHung(running))
+					break;
+			}
+
+			if (!workers.isTerminated())
+			{
+				workers.shutdownNow();
+				for (PageTask task : running)
+					task.abandon();
+			}
+		}
+		catch (InterruptedException e)
+		{
+			workers.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+		finally
+		{
+			watchdog.shutdownNow();
+			result.setElapsedTime(System.nanoTime() - startTime);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Checks if all running pages exceeded their deadline long ago (by one
+	 * more timeout), so their workers probably never end
+	 * @param running Running pages
+	 * @return True if workers should be abandoned, otherwise false
+	 */
+	private boolean isHung(Set<PageTask> running)
+	{
+		if (_timeout <= 0 || running.isEmpty())
+			return false;
+
+		long now = System.nanoTime();
+		for (PageTask task : running)
+		{
+			if (now - task.getStartTime() < 2 * TimeUnit.MILLISECONDS.toNanos(_timeout))
+				return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Segmentation of one page.
+	 */
+	private class PageTask implements Runnable {
+
+		private final String _url;
+		private final int _number;
+		private final VipsBatchResult _result;
+		private final ScheduledExecutorService _watchdog;
+		private final Semaphore _slots;
+		private final Set<PageTask> _running;
+		private volatile long _startTime = 0;
+		private boolean _finished = false;
+		// page was reported as timed out, when its worker was abandoned
+		private boolean _abandoned = false;
+
+		PageTask(String url, int number, VipsBatchResult result, ScheduledExecutorService watchdog, Semaphore slots,
+				Set<PageTask> running)
+		{
+			this._url = url;
+			this._number = number;
+			this._result = result;
+			this._watchdog = watchdog;
+			this._slots = slots;
+			this._running = running;
+		}
+
+		/**
+		 * Returns time, when segmentation of page started
+		 * @return Start time (System.nanoTime())
+		 */
+		long getStartTime()
+		{
+			return _startTime;
+		}
+
+		/**
+		 * Reports page as timed out, when it's still running (its worker
+		 * is left to finish on its own)
+		 */
+		synchronized void abandon()
+		{
+			if (_finished || _abandoned)
+				return;
+
+			_abandoned = true;
+			_result.addAbandoned(_number, _url);
+			System.err.println("Page " + _number + " " + _url + " is still running after its deadline!");
+		}
+
+		/**
+		 * Checks if page's deadline was exceeded
+		 * @return True if deadline was exceeded, otherwise false
+		 */
+		private boolean isDeadlineExceeded()
+		{
+			return _timeout > 0 && System.nanoTime() - _startTime >= TimeUnit.MILLISECONDS.toNanos(_timeout);
+		}
+
+		@Override
+		public void run()
+		{
+			_startTime = System.nanoTime();
+			_running.add(this);
+
+			ScheduledFuture<?> deadline = null;
+			if (_timeout > 0)
+				deadline = _watchdog.schedule(new Interrupter(Thread.currentThread()), _timeout, TimeUnit.MILLISECONDS);
+
+			// result is recorded in finally block, so every page is counted
+			String failure = "Segmentation didn't finish";
+			boolean timedOut = false;
+
+			try
+			{
+				VipsSession session = _engine.createSession(_url);
+				if (_timeout > 0)
+					session.setDeadline(_startTime + TimeUnit.MILLISECONDS.toNanos(_timeout));
+				String filename = _engine.getOutputFileName();
+				if (filename.equals(""))
+					filename = "VIPSResult";
+				session.setOutputFileName(filename + "-" + _number);
+				session.segment();
+
+				timedOut = Thread.currentThread().isInterrupted();
+				failure = null;
+			}
+			catch (InterruptedIOException e)
+			{
+				// socket timeouts are InterruptedIOException too, but they
+				// can come before the deadline
+				timedOut = Thread.currentThread().isInterrupted() || isDeadlineExceeded();
+				if (!timedOut)
+					failure = e.toString();
+			}
+			catch (Exception e)
+			{
+				timedOut = Thread.currentThread().isInterrupted();
+				failure = e.toString();
+			}
+			catch (Error e)
+			{
+				// e.g. StackOverflowError or OutOfMemoryError from one page
+				failure = e.toString();
+			}
+			finally
+			{
+				boolean abandoned;
+				synchronized (this)
+				{
+					_finished = true;
+					abandoned = _abandoned;
+				}
+				_running.remove(this);
+				if (deadline != null)
+					deadline.cancel(false);
+				// don't leak the interrupt to the next page on this worker
+				Thread.interrupted();
+
+				// abandoned page was already reported
+				if (!abandoned)
+				{
+					if (timedOut)
+						_result.addTimeout(_number, _url);
+					else if (failure != null)
+						_result.addFailure(_number, _url, failure);
+					else
+						_result.addSuccess();
+				}
+
+				_slots.release();
+			}
+		}
+
+		/**
+		 * Interrupts worker when the page exceeds its deadline.
+		 */
+		private class Interrupter implements Runnable {
+
+			private final Thread _worker;
+
+			Interrupter(Thread worker)
+			{
+				this._worker = worker;
+			}
+
+			@Override
+			public void run()
+			{
+				synchronized (PageTask.this)
+				{
+					if (!_finished)
+						_worker.interrupt();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Daemon threads for worker pools.
+	 */
+	private static class WorkerThreadFactory implements ThreadFactory {
+
+		private final String _prefix;
+		private final AtomicInteger _counter = new AtomicInteger();
+
+		WorkerThreadFactory(String prefix)
+		{
+			this._prefix = prefix;
+		}
+
+		@Override
+		public Thread newThread(Runnable r)
+		{
+			Thread thread = new Thread(r, _prefix + _counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
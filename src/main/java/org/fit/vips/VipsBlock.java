@@ -12,7 +12,6 @@ import java.util.List;
 import org.fit.cssbox.layout.Box;
 import org.fit.cssbox.layout.ElementBox;
 import org.fit.cssbox.layout.TextBox;
-import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 
 /**
@@ -46,13 +45,25 @@ public class VipsBlock {
 	//if node can be divided
 	private boolean _isDividable = true;
 
-	private String _bgColor = null;
+	// block, to which this block was added last (its properties depend on
+	// this block)
+	private VipsBlock _parent = null;
+
+	private VipsStyleTable _styleTable = null;
+	private VipsStyleTable.Style _style = null;
+	private VipsDocumentOrder _documentOrder = null;
+
+	// position in last block table, that loaded this block
+	private int _tableIndex = VipsBlockTable.NONE;
 
 	private int _frameSourceIndex = 0;
 	private int _sourceIndex = 0;
-	private int _tmpSrcIndex = 0;
 	private int _order = 0;
 
+	// properties are computed on first read and again after change of tree
+	private boolean _propertiesChecked = false;
+	private boolean _sourceIndexChecked = false;
+
 
 	//length of text in node
 	private int _textLen = 0;
@@ -76,7 +87,6 @@ public class VipsBlock {
 	public void setIsVisualBlock(boolean isVisualBlock)
 	{
 		_isVisualBlock = isVisualBlock;
-		checkProperties();
 	}
 
 	/**
@@ -89,88 +99,92 @@ public class VipsBlock {
 	}
 
 	/**
-	 * Checks the properties of visual block
+	 * Returns position of block in last block table, that loaded it
+	 * @return Position or VipsBlockTable.NONE
 	 */
-	private void checkProperties()
+	int getTableIndex()
 	{
-		checkIsImg();
-		checkContainImg(this);
-		checkContainTable(this);
-		checkContainP(this);
-		_linkTextLen = 0;
-		_textLen = 0;
-		countTextLength(this);
-		countLinkTextLength(this);
-		setSourceIndex(this.getBox().getNode().getOwnerDocument());
+		return _tableIndex;
 	}
 
 	/**
-	 * Checks if visual block is an image.
+	 * Sets position of block in block table
+	 * @param index Position
 	 */
-	private void checkIsImg()
+	void setTableIndex(int index)
 	{
-		if (_box.getNode().getNodeName().equals("img"))
-			_isImg = true;
-		else
-			_isImg = false;
+		_tableIndex = index;
 	}
 
 	/**
-	 * Checks if visual block contains image.
-	 * @param vipsBlock Visual block
+	 * Checks the properties of block, if they weren't checked since last
+	 * change of block's tree
 	 */
-	private void checkContainImg(VipsBlock vipsBlock)
+	private void checkProperties()
 	{
-		if (vipsBlock.getBox().getNode().getNodeName().equals("img"))
-		{
-			vipsBlock._isImg = true;
-			this._containImg++;
-		}
+		if (_propertiesChecked)
+			return;
 
-		for (VipsBlock childVipsBlock : vipsBlock.getChildren())
-			checkContainImg(childVipsBlock);
+		checkIsImg();
+		_containImg = 0;
+		_containTable = false;
+		_containP = 0;
+		_linkTextLen = 0;
+		checkContents();
+		countTextLength(this);
+		_propertiesChecked = true;
 	}
 
 	/**
-	 * Checks if visual block contains table.
-	 * @param vipsBlock Visual block
+	 * Marks properties of block and of all its ancestors as outdated
 	 */
-	private void checkContainTable(VipsBlock vipsBlock)
+	private void invalidateProperties()
 	{
-		if (vipsBlock.getBox().getNode().getNodeName().equals("table"))
-			this._containTable = true;
+		_propertiesChecked = false;
+		_sourceIndexChecked = false;
 
-		for (VipsBlock childVipsBlock : vipsBlock.getChildren())
-			checkContainTable(childVipsBlock);
+		// source index of ancestors depends only on their own box
+		for (VipsBlock ancestor = _parent; ancestor != null; ancestor = ancestor._parent)
+			ancestor._propertiesChecked = false;
 	}
 
 	/**
-	 * Checks if visual block contains paragraph.
-	 * @param vipsBlock Visual block
+	 * Checks if visual block is an image.
 	 */
-	private void checkContainP(VipsBlock vipsBlock)
+	private void checkIsImg()
 	{
-		if (vipsBlock.getBox().getNode().getNodeName().equals("p"))
-			this._containP++;
-
-		for (VipsBlock childVipsBlock : vipsBlock.getChildren())
-			checkContainP(childVipsBlock);
+		if (_box.getNode().getNodeName().equals("img"))
+			_isImg = true;
+		else
+			_isImg = false;
 	}
 
 	/**
-	 * Counts length of text in links in visual block
-	 * @param vipsBlock Visual block
+	 * Checks if visual block contains images, tables and paragraphs and
+	 * counts length of text in links (in one traversal of block's subtree).
 	 */
-	private void countLinkTextLength(VipsBlock vipsBlock)
+	private void checkContents()
 	{
-		if (vipsBlock.getBox().getNode().getNodeName().equals("a"))
-		{
-			_linkTextLen += vipsBlock.getBox().getText().length();
+		VipsTraversalStack<VipsBlock> stack = new VipsTraversalStack<VipsBlock>();
+		stack.push(this);
 
+		while (!stack.isEmpty())
+		{
+			VipsBlock vipsBlock = stack.pop();
+			String nodeName = vipsBlock.getBox().getNode().getNodeName();
+
+			if (nodeName.equals("img"))
+				this._containImg++;
+			else if (nodeName.equals("table"))
+				this._containTable = true;
+			else if (nodeName.equals("p"))
+				this._containP++;
+			else if (nodeName.equals("a"))
+				this._linkTextLen += vipsBlock.getBox().getText().length();
+
+			for (VipsBlock childVipsBlock : vipsBlock.getChildren())
+				stack.push(childVipsBlock);
 		}
-
-		for (VipsBlock childVipsBlock : vipsBlock.getChildren())
-			countLinkTextLength(childVipsBlock);
 	}
 
 	/**
@@ -179,7 +193,15 @@ public class VipsBlock {
 	 */
 	private void countTextLength(VipsBlock vipsBlock)
 	{
-		_textLen = vipsBlock.getBox().getText().replaceAll("\n", "").length();
+		String text = vipsBlock.getBox().getText();
+		_textLen = text.length();
+
+		// new lines aren't counted
+		for (int i = 0; i < text.length(); i++)
+		{
+			if (text.charAt(i) == '\n')
+				_textLen--;
+		}
 	}
 
 	/**
@@ -189,10 +211,27 @@ public class VipsBlock {
 	public void addChild(VipsBlock child)
 	{
 		_children.add(child);
+		child._parent = this;
+		invalidateProperties();
+	}
+
+	/**
+	 * Replaces child of block
+	 * @param index Index of replaced child
+	 * @param child New child
+	 */
+	public void setChild(int index, VipsBlock child)
+	{
+		VipsBlock oldChild = _children.set(index, child);
+		if (oldChild._parent == this)
+			oldChild._parent = null;
+		child._parent = this;
+		invalidateProperties();
 	}
 
 	/**
-	 * Gets all blocks children
+	 * Gets all blocks children (children should be changed only through
+	 * addChild and setChild, so properties of block are computed again)
 	 * @return List of children
 	 */
 	public List<VipsBlock> getChildren()
@@ -207,6 +246,30 @@ public class VipsBlock {
 	public void setBox(Box box)
 	{
 		this._box = box;
+		this._style = null;
+		invalidateProperties();
+	}
+
+	/**
+	 * Sets table, from which style of block's box is read
+	 * @param styleTable Style table or null for resolving style without
+	 * table
+	 */
+	void setStyleTable(VipsStyleTable styleTable)
+	{
+		this._styleTable = styleTable;
+		this._style = null;
+	}
+
+	/**
+	 * Sets numbering of nodes, from which source index of block is read
+	 * @param documentOrder Numbering or null for numbering document again
+	 * on every read
+	 */
+	void setDocumentOrder(VipsDocumentOrder documentOrder)
+	{
+		this._documentOrder = documentOrder;
+		this._sourceIndexChecked = false;
 	}
 
 	/**
@@ -308,6 +371,7 @@ public class VipsBlock {
 	 */
 	public boolean isImg()
 	{
+		checkProperties();
 		return _isImg;
 	}
 
@@ -317,6 +381,7 @@ public class VipsBlock {
 	 */
 	public int containImg()
 	{
+		checkProperties();
 		return _containImg;
 	}
 
@@ -326,6 +391,7 @@ public class VipsBlock {
 	 */
 	public boolean containTable()
 	{
+		checkProperties();
 		return _containTable;
 	}
 
@@ -335,6 +401,7 @@ public class VipsBlock {
 	 */
 	public int getTextLength()
 	{
+		checkProperties();
 		return _textLen;
 	}
 
@@ -344,6 +411,7 @@ public class VipsBlock {
 	 */
 	public int getLinkTextLength()
 	{
+		checkProperties();
 		return _linkTextLen;
 	}
 
@@ -353,35 +421,23 @@ public class VipsBlock {
 	 */
 	public int containP()
 	{
+		checkProperties();
 		return _containP;
 	}
 
 	/**
-	 * Finds background color of element
-	 * @param element Element
+	 * Gets style of block's box from style table
+	 * @return Style
 	 */
-	private void findBgColor(Element element)
+	private VipsStyleTable.Style getStyle()
 	{
-		String backgroundColor = element.getAttribute("background-color");
-
-		if (backgroundColor.isEmpty())
+		if (_style == null)
 		{
-			if (element.getParentNode() != null &&
-			    !element.getTagName().equals("body"))
-			{
-				findBgColor((Element) element.getParentNode());
-			}
-			else
-			{
-				_bgColor = "#ffffff";
-				return;
-			}
-		}
-		else
-		{
-			_bgColor = backgroundColor;
-			return;
+			_style = (_styleTable != null) ? _styleTable.getStyle(this.getBox()) :
+				VipsStyleTable.resolveUncachedStyle(this.getBox());
 		}
+
+		return _style;
 	}
 
 	/**
@@ -390,23 +446,7 @@ public class VipsBlock {
 	 */
 	public String getBgColor()
 	{
-		if (_bgColor != null)
-			return _bgColor;
-
-		if (this.getBox() instanceof TextBox)
-		{
-			_bgColor = "#ffffff";
-		}
-		else
-		{
-			_bgColor = this.getElementBox().getStylePropertyValue("background-color");
-		}
-
-
-		if (_bgColor.isEmpty())
-			findBgColor(this.getElementBox().getElement());
-
-		return _bgColor;
+		return getStyle().getBgColor();
 	}
 
 	/**
@@ -415,7 +455,7 @@ public class VipsBlock {
 	 */
 	public int getFontSize()
 	{
-		return this.getBox().getVisualContext().getFont().getSize();
+		return getStyle().getFontSize();
 	}
 
 	/**
@@ -431,10 +471,10 @@ public class VipsBlock {
 			return fontWeight;
 		}
 
-		if (this.getElementBox().getStylePropertyValue("font-weight") == null)
+		if (getStyle().getFontWeight() == null)
 			return fontWeight;
 
-		fontWeight = this.getElementBox().getStylePropertyValue("font-weight");
+		fontWeight = getStyle().getFontWeight();
 
 		if (fontWeight.isEmpty())
 			fontWeight = "normal";
@@ -452,29 +492,32 @@ public class VipsBlock {
 	}
 
 	/**
-	 * Sets source index of block
-	 * @param node Node
+	 * Gets source index of block
+	 * @return Block's source index
 	 */
-	private void setSourceIndex(Node node)
+	public int getSourceIndex()
 	{
-		if (!this.getBox().getNode().equals(node))
-			_tmpSrcIndex++;
-		else
-			_sourceIndex = _tmpSrcIndex;
-
-		for (int i = 0; i < node.getChildNodes().getLength(); i++)
+		if (!_sourceIndexChecked)
 		{
-			setSourceIndex(node.getChildNodes().item(i));
+			_sourceIndex = getSourceIndex(this.getBox().getNode());
+			_sourceIndexChecked = true;
 		}
+
+		return _sourceIndex;
 	}
 
 	/**
-	 * Gets source index of block
-	 * @return Block's source index
+	 * Returns position of node in document order (from the same numbering
+	 * as block's source index)
+	 * @param node Node of page
+	 * @return Position of node
 	 */
-	public int getSourceIndex()
+	int getSourceIndex(Node node)
 	{
-		return _sourceIndex;
+		if (_documentOrder != null)
+			return _documentOrder.getSourceIndex(node);
+
+		return VipsDocumentOrder.findSourceIndex(node);
 	}
 
 	/**
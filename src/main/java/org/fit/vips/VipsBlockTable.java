@@ -0,0 +1,366 @@
+/*
+ * Tomas Popela, 2012
+ * VIPS - Visual Internet Page Segmentation
+ * Module - VipsBlockTable.java
+ */
+
+package org.fit.vips;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.fit.cssbox.layout.Box;
+import org.fit.cssbox.layout.TextBox;
+
+/**
+ * Flat representation of block tree.
+ * <p>
+ * Blocks are stored in tree order in primitive arrays (geometry, DoC, flags
+ * and links to parent, first child and next sibling), so tree can be walked
+ * and visual blocks can be found without any allocation. Arrays only grow,
+ * so one table is reused for all rounds of segmentation. Block at index is
+ * read with getters taking the index, values are read from blocks when
+ * table is loaded.
+ * @author Tomas Popela
+ *
+ */
+public final class VipsBlockTable {
+
+	/** Index of missing parent, child or sibling */
+	public static final int NONE = -1;
+
+	private static final int VISUAL_BLOCK = 1;
+	private static final int DIVIDABLE = 2;
+	private static final int ALREADY_DIVIDED = 4;
+	private static final int TEXT = 8;
+
+	private int _size = 0;
+	private VipsBlock[] _blocks = new VipsBlock[0];
+	private int[] _parent = new int[0];
+	private int[] _firstChild = new int[0];
+	private int[] _nextSibling = new int[0];
+	// last child added so far (used only during loading)
+	private int[] _lastChild = new int[0];
+	// number of blocks in subtree (block itself included)
+	private int[] _subtreeSize = new int[0];
+	private int[] _x = new int[0];
+	private int[] _y = new int[0];
+	private int[] _width = new int[0];
+	private int[] _height = new int[0];
+	private int[] _doc = new int[0];
+	private byte[] _flags = new byte[0];
+	// indexes of visual blocks in tree order
+	private int[] _visualBlocks = new int[0];
+	private int _visualBlocksCount = 0;
+	// work stack for loading (value is index of parent)
+	private final VipsTraversalStack<VipsBlock> _stack = new VipsTraversalStack<VipsBlock>();
+
+	/**
+	 * Loads block tree to table. Previous contents are replaced.
+	 * @param root Root of block tree
+	 */
+	public void load(VipsBlock root)
+	{
+		int previousSize = _size;
+		_size = 0;
+		_visualBlocksCount = 0;
+		_stack.clear();
+		_stack.push(root, NONE);
+
+		while (!_stack.isEmpty())
+		{
+			VipsBlock vipsBlock = _stack.pop();
+			int parent = _stack.getValue();
+			int index = add(vipsBlock, parent);
+
+			List<VipsBlock> children = vipsBlock.getChildren();
+			for (int i = children.size() - 1; i >= 0; i--)
+				_stack.push(children.get(i), index);
+		}
+
+		// subtree sizes are summed from the last block
+		for (int i = _size - 1; i > 0; i--)
+			_subtreeSize[_parent[i]] += _subtreeSize[i];
+
+		// blocks from previous tree aren't held
+		if (previousSize > _size)
+			Arrays.fill(_blocks, _size, previousSize, null);
+	}
+
+	/**
+	 * Adds block after last block in table
+	 * @param vipsBlock Block
+	 * @param parent Index of parent
+	 * @return Index of block
+	 */
+	private int add(VipsBlock vipsBlock, int parent)
+	{
+		if (_size == _blocks.length)
+			grow();
+
+		int index = _size++;
+		Box box = vipsBlock.getBox();
+
+		_blocks[index] = vipsBlock;
+		vipsBlock.setTableIndex(index);
+		_parent[index] = parent;
+		_firstChild[index] = NONE;
+		_nextSibling[index] = NONE;
+		_lastChild[index] = NONE;
+		_subtreeSize[index] = 1;
+		_x[index] = box.getAbsoluteContentX();
+		_y[index] = box.getAbsoluteContentY();
+		_width[index] = box.getContentWidth();
+		_height[index] = box.getContentHeight();
+		_doc[index] = vipsBlock.getDoC();
+		_flags[index] = (byte) ((vipsBlock.isVisualBlock() ? VISUAL_BLOCK : 0) |
+				(vipsBlock.isDividable() ? DIVIDABLE : 0) |
+				(vipsBlock.isAlreadyDivided() ? ALREADY_DIVIDED : 0) |
+				(box instanceof TextBox ? TEXT : 0));
+
+		if (parent != NONE)
+		{
+			if (_lastChild[parent] == NONE)
+				_firstChild[parent] = index;
+			else
+				_nextSibling[_lastChild[parent]] = index;
+
+			_lastChild[parent] = index;
+		}
+
+		if (vipsBlock.isVisualBlock())
+		{
+			if (_visualBlocksCount == _visualBlocks.length)
+				_visualBlocks = Arrays.copyOf(_visualBlocks, Math.max(64, _visualBlocksCount * 2));
+			_visualBlocks[_visualBlocksCount++] = index;
+		}
+
+		return index;
+	}
+
+	/**
+	 * Enlarges all arrays
+	 */
+	private void grow()
+	{
+		int capacity = Math.max(256, _blocks.length * 2);
+
+		_blocks = Arrays.copyOf(_blocks, capacity);
+		_parent = Arrays.copyOf(_parent, capacity);
+		_firstChild = Arrays.copyOf(_firstChild, capacity);
+		_nextSibling = Arrays.copyOf(_nextSibling, capacity);
+		_lastChild = Arrays.copyOf(_lastChild, capacity);
+		_subtreeSize = Arrays.copyOf(_subtreeSize, capacity);
+		_x = Arrays.copyOf(_x, capacity);
+		_y = Arrays.copyOf(_y, capacity);
+		_width = Arrays.copyOf(_width, capacity);
+		_height = Arrays.copyOf(_height, capacity);
+		_doc = Arrays.copyOf(_doc, capacity);
+		_flags = Arrays.copyOf(_flags, capacity);
+	}
+
+	/**
+	 * Returns number of blocks
+	 * @return Number of blocks
+	 */
+	public int size()
+	{
+		return _size;
+	}
+
+	/**
+	 * Returns block object
+	 * @param index Index of block
+	 * @return Block
+	 */
+	public VipsBlock getBlock(int index)
+	{
+		return _blocks[index];
+	}
+
+	/**
+	 * Returns index of block
+	 * @param vipsBlock Block
+	 * @return Index of block or NONE, when block isn't in table
+	 */
+	public int indexOf(VipsBlock vipsBlock)
+	{
+		int index = vipsBlock.getTableIndex();
+
+		// block could be loaded by another table or by previous load
+		if (index < 0 || index >= _size || _blocks[index] != vipsBlock)
+			return NONE;
+
+		return index;
+	}
+
+	/**
+	 * Returns box of block
+	 * @param index Index of block
+	 * @return Box
+	 */
+	public Box getBox(int index)
+	{
+		return _blocks[index].getBox();
+	}
+
+	/**
+	 * Returns parent of block
+	 * @param index Index of block
+	 * @return Index of parent or NONE for root
+	 */
+	public int getParent(int index)
+	{
+		return _parent[index];
+	}
+
+	/**
+	 * Returns first child of block
+	 * @param index Index of block
+	 * @return Index of child or NONE
+	 */
+	public int getFirstChild(int index)
+	{
+		return _firstChild[index];
+	}
+
+	/**
+	 * Returns next sibling of block
+	 * @param index Index of block
+	 * @return Index of sibling or NONE
+	 */
+	public int getNextSibling(int index)
+	{
+		return _nextSibling[index];
+	}
+
+	/**
+	 * Returns number of blocks in block's subtree. Subtree occupies indexes
+	 * from index to index + size - 1.
+	 * @param index Index of block
+	 * @return Number of blocks (block itself included)
+	 */
+	public int getSubtreeSize(int index)
+	{
+		return _subtreeSize[index];
+	}
+
+	/**
+	 * Returns absolute X coordinate of block's content
+	 * @param index Index of block
+	 * @return X coordinate
+	 */
+	public int getX(int index)
+	{
+		return _x[index];
+	}
+
+	/**
+	 * Returns absolute Y coordinate of block's content
+	 * @param index Index of block
+	 * @return Y coordinate
+	 */
+	public int getY(int index)
+	{
+		return _y[index];
+	}
+
+	/**
+	 * Returns width of block's content
+	 * @param index Index of block
+	 * @return Width
+	 */
+	public int getWidth(int index)
+	{
+		return _width[index];
+	}
+
+	/**
+	 * Returns height of block's content
+	 * @param index Index of block
+	 * @return Height
+	 */
+	public int getHeight(int index)
+	{
+		return _height[index];
+	}
+
+	/**
+	 * Returns Degree of Coherence of block
+	 * @param index Index of block
+	 * @return DoC
+	 */
+	public int getDoC(int index)
+	{
+		return _doc[index];
+	}
+
+	/**
+	 * Checks if block is visual block
+	 * @param index Index of block
+	 * @return True if block is visual block, otherwise false
+	 */
+	public boolean isVisualBlock(int index)
+	{
+		return (_flags[index] & VISUAL_BLOCK) != 0;
+	}
+
+	/**
+	 * Checks if block can be divided
+	 * @param index Index of block
+	 * @return True if block can be divided, otherwise false
+	 */
+	public boolean isDividable(int index)
+	{
+		return (_flags[index] & DIVIDABLE) != 0;
+	}
+
+	/**
+	 * Checks if block was divided
+	 * @param index Index of block
+	 * @return True if block was divided, otherwise false
+	 */
+	public boolean isAlreadyDivided(int index)
+	{
+		return (_flags[index] & ALREADY_DIVIDED) != 0;
+	}
+
+	/**
+	 * Checks if block is made from text box
+	 * @param index Index of block
+	 * @return True if block is text block, otherwise false
+	 */
+	public boolean isTextBlock(int index)
+	{
+		return (_flags[index] & TEXT) != 0;
+	}
+
+	/**
+	 * Returns number of visual blocks
+	 * @return Number of visual blocks
+	 */
+	public int getVisualBlocksCount()
+	{
+		return _visualBlocksCount;
+	}
+
+	/**
+	 * Returns index of visual block
+	 * @param i Order of visual block in tree order
+	 * @return Index of block
+	 */
+	public int getVisualBlock(int i)
+	{
+		return _visualBlocks[i];
+	}
+
+	/**
+	 * Adds all visual blocks in tree order to list
+	 * @param list List
+	 */
+	public void getVisualBlocks(List<VipsBlock> list)
+	{
+		for (int i = 0; i < _visualBlocksCount; i++)
+			list.add(_blocks[_visualBlocks[i]]);
+	}
+}
@@ -0,0 +1,65 @@
+/*
+ * Tomas Popela, 2012
+ * VIPS - Visual Internet Page Segmentation
+ * Module - VipsCounter.java
+ */
+
+package org.fit.vips;
+
+/**
+ * Counters of page segmentation reported to VipsListener.
+ * @author Tomas Popela
+ *
+ */
+public enum VipsCounter {
+	/** Number of boxes in rendered page */
+	BOXES,
+	/** Number of visual blocks */
+	VISUAL_BLOCKS,
+	/** Number of horizontal and vertical separators */
+	SEPARATORS,
+	/** Number of visual structures in final structure */
+	VISUAL_STRUCTURES,
+	/** Number of segmentation rounds that were run */
+	ITERATIONS,
+	/** Number of nodes decided by rule one in all rounds */
+	RULE_ONE,
+	/** Number of nodes decided by rule two in all rounds */
+	RULE_TWO,
+	/** Number of nodes decided by rule three in all rounds */
+	RULE_THREE,
+	/** Number of nodes decided by rule four in all rounds */
+	RULE_FOUR,
+	/** Number of nodes decided by rule five in all rounds */
+	RULE_FIVE,
+	/** Number of nodes decided by rule six in all rounds */
+	RULE_SIX,
+	/** Number of nodes decided by rule seven in all rounds */
+	RULE_SEVEN,
+	/** Number of nodes decided by rule eight in all rounds */
+	RULE_EIGHT,
+	/** Number of nodes decided by rule nine in all rounds */
+	RULE_NINE,
+	/** Number of nodes decided by rule ten in all rounds */
+	RULE_TEN,
+	/** Number of nodes decided by rule eleven in all rounds */
+	RULE_ELEVEN,
+	/** Number of nodes decided by rule twelve in all rounds */
+	RULE_TWELVE,
+	/** Number of nodes, where no rule succeeded, in all rounds */
+	NO_RULE,
+	/** Number of hidden subtrees left out of block tree (counted once per page) */
+	PRUNED_SUBTREES,
+	/** Number of boxes in pruned subtrees (counted once per page) */
+	PRUNED_BOXES;
+
+	/**
+	 * Returns counter of nodes decided by rule
+	 * @param rule Number of rule (1-12)
+	 * @return Counter
+	 */
+	public static VipsCounter forRule(int rule)
+	{
+		return values()[RULE_ONE.ordinal() + rule - 1];
+	}
+}
@@ -0,0 +1,110 @@
+/*
+ * Tomas Popela, 2012
+ * VIPS - Visual Internet Page Segmentation
+ * Module - VipsDocumentOrder.java
+ */
+
+package org.fit.vips;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+/**
+ * Positions of DOM nodes in document order (source indexes).
+ * <p>
+ * All nodes of document are numbered in one traversal, when position of
+ * some node is needed first time. Numbering belongs to parser of one
+ * session, so every block and visual structure of page reads the same
+ * numbering and nothing is left in document (document can be changed and
+ * segmented again).
+ * @author Tomas Popela
+ *
+ */
+final class VipsDocumentOrder {
+
+	private final Map<Node, Integer> _sourceIndexes = new IdentityHashMap<Node, Integer>();
+
+	/**
+	 * Creates empty numbering
+	 */
+	VipsDocumentOrder()
+	{
+	}
+
+	/**
+	 * Returns position of node in document order (document itself has
+	 * position 0).
+	 * @param node Node
+	 * @return Position or 0, when node isn't in document
+	 */
+	synchronized int getSourceIndex(Node node)
+	{
+		Document document = getDocument(node);
+
+		if (document == null)
+			return 0;
+
+		if (!_sourceIndexes.containsKey(document))
+			numberNodes(document, _sourceIndexes);
+
+		Integer sourceIndex = _sourceIndexes.get(node);
+
+		return (sourceIndex != null) ? sourceIndex : 0;
+	}
+
+	/**
+	 * Returns position of node in document order without any numbering
+	 * kept (whole document is numbered again)
+	 * @param node Node
+	 * @return Position or 0, when node isn't in document
+	 */
+	static int findSourceIndex(Node node)
+	{
+		Document document = getDocument(node);
+
+		if (document == null)
+			return 0;
+
+		Map<Node, Integer> sourceIndexes = new IdentityHashMap<Node, Integer>();
+		numberNodes(document, sourceIndexes);
+		Integer sourceIndex = sourceIndexes.get(node);
+
+		return (sourceIndex != null) ? sourceIndex : 0;
+	}
+
+	/**
+	 * Returns document of node
+	 * @param node Node
+	 * @return Document or null
+	 */
+	private static Document getDocument(Node node)
+	{
+		return (node.getNodeType() == Node.DOCUMENT_NODE) ? (Document) node : node.getOwnerDocument();
+	}
+
+	/**
+	 * Numbers all nodes of document in document order
+	 * @param document Document
+	 * @param sourceIndexes Positions of nodes
+	 */
+	private static void numberNodes(Document document, Map<Node, Integer> sourceIndexes)
+	{
+		VipsTraversalStack<Node> stack = new VipsTraversalStack<Node>();
+		int sourceIndex = 0;
+		stack.push(document);
+
+		// children are reached through sibling links (DOM's node lists share
+		// one cache per document)
+		while (!stack.isEmpty())
+		{
+			Node node = stack.pop();
+			sourceIndexes.put(node, sourceIndex++);
+
+			for (Node child = node.getLastChild(); child != null; child = child.getPreviousSibling())
+				stack.push(child);
+		}
+	}
+}
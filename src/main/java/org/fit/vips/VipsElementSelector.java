@@ -0,0 +1,103 @@
+/*
+ * Tomas Popela, 2012
+ * VIPS - Visual Internet Page Segmentation
+ * Module - VipsElementSelector.java
+ */
+
+package org.fit.vips;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.fit.cssbox.layout.Box;
+import org.fit.cssbox.layout.ElementBox;
+
+import cz.vutbr.web.css.CSSException;
+import cz.vutbr.web.css.CSSFactory;
+import cz.vutbr.web.css.NodeData;
+import cz.vutbr.web.css.RuleBlock;
+import cz.vutbr.web.css.RuleSet;
+import cz.vutbr.web.css.StyleSheet;
+import cz.vutbr.web.domassign.DirectAnalyzer;
+
+/**
+ * Finds element box by CSS selector (selectors are matched by jStyleParser).
+ * @author Tomas Popela
+ *
+ */
+final class VipsElementSelector {
+
+	// property set only by rule of selector (it isn't inherited)
+	private static final String MARKER_PROPERTY = "z-index";
+
+	private final DirectAnalyzer _analyzer;
+
+	/**
+	 * Parses selector
+	 * @param selector CSS selector (e.g. #main)
+	 * @throws IllegalArgumentException When selector isn't valid
+	 */
+	VipsElementSelector(String selector)
+	{
+		if (selector == null || selector.trim().isEmpty())
+			throw new IllegalArgumentException("Selector is empty!");
+
+		// selector can't end rule or start another one
+		if (selector.indexOf('{') != -1 || selector.indexOf('}') != -1 || selector.indexOf(';') != -1)
+			throw new IllegalArgumentException("Invalid selector " + selector + "!");
+
+		StyleSheet styleSheet;
+
+		try
+		{
+			styleSheet = CSSFactory.parseString(selector + " { " + MARKER_PROPERTY + ": 0 }", null);
+		}
+		catch (IOException e)
+		{
+			throw new IllegalArgumentException("Can't parse selector " + selector + ": " + e.getMessage(), e);
+		}
+		catch (CSSException e)
+		{
+			throw new IllegalArgumentException("Can't parse selector " + selector + ": " + e.getMessage(), e);
+		}
+
+		// parser skips invalid rules, so valid selector gives just one rule
+		if (styleSheet.size() != 1 || !(styleSheet.get(0) instanceof RuleSet))
+			throw new IllegalArgumentException("Invalid selector " + selector + "!");
+
+		RuleBlock<?> rule = styleSheet.get(0);
+		if (((RuleSet) rule).getSelectors().length == 0 || rule.size() != 1)
+			throw new IllegalArgumentException("Invalid selector " + selector + "!");
+
+		_analyzer = new DirectAnalyzer(styleSheet);
+	}
+
+	/**
+	 * Finds first element box (in tree order), whose element matches selector
+	 * @param root Root of searched box tree
+	 * @return Element box or null, when no element matches
+	 */
+	ElementBox findElementBox(ElementBox root)
+	{
+		VipsTraversalStack<Box> stack = new VipsTraversalStack<Box>();
+		stack.push(root);
+
+		while (!stack.isEmpty())
+		{
+			ElementBox box = (ElementBox) stack.pop();
+			NodeData style = _analyzer.getElementStyle(box.getElement(), null, "screen");
+
+			if (style != null && style.getProperty(MARKER_PROPERTY, false) != null)
+				return box;
+
+			List<Box> children = box.getSubBoxList();
+			for (int i = children.size() - 1; i >= 0; i--)
+			{
+				if (children.get(i) instanceof ElementBox)
+					stack.push(children.get(i));
+			}
+		}
+
+		return null;
+	}
+}
@@ -0,0 +1,753 @@
+/*
+ * Tomas Popela, 2012
+ * VIPS - Visual Internet Page Segmentation
+ * Module - VipsEngine.java
+ */
+
+package org.fit.vips;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import org.w3c.dom.Document;
+
+/**
+ * Reusable and thread-safe segmentation engine.
+ * <p>
+ * Engine holds immutable configuration of the algorithm and hands out
+ * sessions that segment one page each. Sessions don't touch any process-wide
+ * state (stdout, system properties), so one engine can be shared by many
+ * threads that segment pages concurrently.
+ * @author Tomas Popela
+ *
+ */
+public final class VipsEngine {
+
+	private final boolean _graphicsOutput;
+	private final boolean _outputToFolder;
+	private final boolean _outputEscaping;
+	private final boolean _xmlOutput;
+	private final boolean _adaptiveSegmentation;
+	private final boolean _incrementalParsing;
+	private final boolean _sweepLineDetection;
+	private final boolean[] _enabledRules;
+	private final VipsProfile _profile;
+	private final boolean _pruning;
+	private final int _pDoC;
+	private final int[] _pDoCs;
+	private final String _filename;
+	private final File _outputDirectory;
+	private final int _sizeTresholdWidth;
+	private final int _sizeTresholdHeight;
+	private final int _viewportWidth;
+	private final int _viewportHeight;
+	private final VipsListener _listener;
+	private final VipsStyleSheetCache _styleSheetCache;
+	private final ForkJoinPool _forkJoinPool;
+	private final int _parallelCutoff;
+	private final int[] _region;
+	private final String _regionSelector;
+
+	private VipsEngine(Builder builder)
+	{
+		this._graphicsOutput = builder._graphicsOutput;
+		this._outputToFolder = builder._outputToFolder;
+		this._outputEscaping = builder._outputEscaping;
+		this._xmlOutput = builder._xmlOutput;
+		this._adaptiveSegmentation = builder._adaptiveSegmentation;
+		this._incrementalParsing = builder._incrementalParsing;
+		this._sweepLineDetection = builder._sweepLineDetection;
+		this._enabledRules = builder._enabledRules.clone();
+		this._profile = builder._profile;
+		this._pruning = builder._pruning;
+		this._pDoC = builder._pDoC;
+		this._pDoCs = builder._pDoCs.clone();
+		this._filename = builder._filename;
+		this._outputDirectory = builder._outputDirectory;
+		this._sizeTresholdWidth = builder._sizeTresholdWidth;
+		this._sizeTresholdHeight = builder._sizeTresholdHeight;
+		this._viewportWidth = builder._viewportWidth;
+		this._viewportHeight = builder._viewportHeight;
+		this._listener = builder._listener;
+		this._styleSheetCache = builder._styleSheetCache;
+		this._forkJoinPool = builder._forkJoinPool;
+		this._parallelCutoff = builder._parallelCutoff;
+		this._region = (builder._region != null) ? builder._region.clone() : null;
+		this._regionSelector = builder._regionSelector;
+	}
+
+	/**
+	 * Creates new session for page on given address.
+	 * @param url Web page's address (http:// is used when no protocol is given)
+	 * @return New session
+	 * @throws MalformedURLException
+	 */
+	public VipsSession createSession(String url) throws MalformedURLException
+	{
+		if (url.contains("://") || url.startsWith("file:"))
+			return createSession(new URL(url));
+		else
+			return createSession(new URL("http://" + url));
+	}
+
+	/**
+	 * Creates new session for page on given URL.
+	 * @param url Web page's URL
+	 * @return New session
+	 */
+	public VipsSession createSession(URL url)
+	{
+		return new VipsSession(this, url);
+	}
+
+	/**
+	 * Creates new session for page read from stream. No connection is opened
+	 * for the page itself, the stream is closed after parsing.
+	 * @param input Page's HTML source
+	 * @param baseUrl Page's base URL used for relative resources
+	 * @return New session
+	 */
+	public VipsSession createSession(InputStream input, URL baseUrl)
+	{
+		VipsSession session = new VipsSession(this, baseUrl);
+		session.setInput(input);
+		return session;
+	}
+
+	/**
+	 * Creates new session for page from HTML source. No connection is opened
+	 * for the page itself.
+	 * @param input Page's HTML source
+	 * @param baseUrl Page's base URL used for relative resources
+	 * @return New session
+	 */
+	public VipsSession createSession(byte[] input, URL baseUrl)
+	{
+		return createSession(new ByteArrayInputStream(input), baseUrl);
+	}
+
+	/**
+	 * Creates new session for page stored in local file.
+	 * @param file HTML file
+	 * @return New session
+	 * @throws MalformedURLException
+	 */
+	public VipsSession createSession(File file) throws MalformedURLException
+	{
+		VipsSession session = new VipsSession(this, file.toURI().toURL());
+		session.setInput(file);
+		return session;
+	}
+
+	/**
+	 * Creates new session for already parsed page. HTML parsing is skipped,
+	 * styles and layout are computed from given DOM tree (style attributes
+	 * are added to the tree during the analysis).
+	 * @param document Page's DOM tree
+	 * @param baseUrl Page's base URL used for relative resources
+	 * @return New session
+	 */
+	public VipsSession createSession(Document document, URL baseUrl)
+	{
+		VipsSession session = new VipsSession(this, baseUrl);
+		session.setInput(document);
+		return session;
+	}
+
+	/**
+	 * Checks if graphics output is enabled.
+	 * @return True if enabled, otherwise false
+	 */
+	public boolean isGraphicsOutputEnabled()
+	{
+		return _graphicsOutput;
+	}
+
+	/**
+	 * Checks if new directory is created for every session.
+	 * @return True if enabled, otherwise false
+	 */
+	public boolean isOutputToFolderEnabled()
+	{
+		return _outputToFolder;
+	}
+
+	/**
+	 * Checks if output XML characters are escaped.
+	 * @return True if enabled, otherwise false
+	 */
+	public boolean isOutputEscapingEnabled()
+	{
+		return _outputEscaping;
+	}
+
+	/**
+	 * Checks if XML output is written at the end of segmentation.
+	 * @return True if enabled, otherwise false
+	 */
+	public boolean isXmlOutputEnabled()
+	{
+		return _xmlOutput;
+	}
+
+	/**
+	 * Checks if segmentation skips rounds, that can't change the structure.
+	 * @return True if enabled, otherwise false
+	 */
+	public boolean isAdaptiveSegmentationEnabled()
+	{
+		return _adaptiveSegmentation;
+	}
+
+	/**
+	 * Checks if block tree is kept between rounds and only refined.
+	 * @return True if enabled, otherwise false
+	 */
+	public boolean isIncrementalParsingEnabled()
+	{
+		return _incrementalParsing;
+	}
+
+	/**
+	 * Checks if separators are detected as gaps between sorted visual blocks.
+	 * @return True if enabled, otherwise false
+	 */
+	public boolean isSweepLineDetectionEnabled()
+	{
+		return _sweepLineDetection;
+	}
+
+	/**
+	 * Checks if VIPS rule is used during block parsing.
+	 * @param rule Number of rule (1-12)
+	 * @return True if enabled, otherwise false
+	 */
+	public boolean isVipsRuleEnabled(int rule)
+	{
+		return _profile.isRuleEnabled(rule) && _enabledRules[rule];
+	}
+
+	/**
+	 * Returns profile of VIPS rules.
+	 * @return Profile
+	 */
+	public VipsProfile getProfile()
+	{
+		return _profile;
+	}
+
+	/**
+	 * Checks if hidden subtrees are left out of block tree.
+	 * @return True if enabled, otherwise false
+	 */
+	public boolean isPruningEnabled()
+	{
+		return _pruning;
+	}
+
+	/**
+	 * Returns permitted degree of coherence (pDoC) value.
+	 * @return pDoC value
+	 */
+	public int getPredefinedDoC()
+	{
+		return _pDoC;
+	}
+
+	/**
+	 * Returns pDoC values, for which outputs are written from one segmentation.
+	 * @return Sorted pDoC values or empty array, when only one output is written
+	 */
+	public int[] getPredefinedDoCs()
+	{
+		return _pDoCs.clone();
+	}
+
+	/**
+	 * Returns output filename (without extension).
+	 * @return Output filename
+	 */
+	public String getOutputFileName()
+	{
+		return _filename;
+	}
+
+	/**
+	 * Returns directory where the output is written.
+	 * @return Output directory
+	 */
+	public File getOutputDirectory()
+	{
+		return _outputDirectory;
+	}
+
+	/**
+	 * Returns element's width treshold used in first iteration.
+	 * @return Width treshold
+	 */
+	public int getSizeTresholdWidth()
+	{
+		return _sizeTresholdWidth;
+	}
+
+	/**
+	 * Returns element's height treshold used in first iteration.
+	 * @return Height treshold
+	 */
+	public int getSizeTresholdHeight()
+	{
+		return _sizeTresholdHeight;
+	}
+
+	/**
+	 * Returns width of viewport used for page rendering.
+	 * @return Viewport's width
+	 */
+	public int getViewportWidth()
+	{
+		return _viewportWidth;
+	}
+
+	/**
+	 * Returns height of viewport used for page rendering.
+	 * @return Viewport's height
+	 */
+	public int getViewportHeight()
+	{
+		return _viewportHeight;
+	}
+
+	/**
+	 * Returns listener, that receives phase durations and counters from all
+	 * sessions.
+	 * @return Listener or null
+	 */
+	public VipsListener getListener()
+	{
+		return _listener;
+	}
+
+	/**
+	 * Returns cache of external style sheets shared by sessions.
+	 * @return Cache or null
+	 */
+	public VipsStyleSheetCache getStyleSheetCache()
+	{
+		return _styleSheetCache;
+	}
+
+	/**
+	 * Returns pool used for parallel division of blocks.
+	 * @return Pool or null, when blocks are divided sequentially
+	 */
+	public ForkJoinPool getForkJoinPool()
+	{
+		return _forkJoinPool;
+	}
+
+	/**
+	 * Returns minimal number of blocks in subtree, that is divided by one
+	 * task during parallel division.
+	 * @return Number of blocks
+	 */
+	public int getParallelCutoff()
+	{
+		return _parallelCutoff;
+	}
+
+	/**
+	 * Returns rectangle of page, to which segmentation is restricted.
+	 * @return Array with X, Y, width and height or null for whole page
+	 */
+	public int[] getRegion()
+	{
+		return (_region != null) ? _region.clone() : null;
+	}
+
+	/**
+	 * Returns CSS selector of element, to whose subtree segmentation is
+	 * restricted.
+	 * @return Selector or null for whole page
+	 */
+	public String getRegionSelector()
+	{
+		return _regionSelector;
+	}
+
+	/**
+	 * Builder of VipsEngine configuration.
+	 */
+	public static class Builder {
+
+		private boolean _graphicsOutput = false;
+		private boolean _outputToFolder = false;
+		private boolean _outputEscaping = true;
+		private boolean _xmlOutput = true;
+		private boolean _adaptiveSegmentation = false;
+		private boolean _incrementalParsing = false;
+		private boolean _sweepLineDetection = false;
+		private boolean[] _enabledRules = createEnabledRules();
+		private VipsProfile _profile = VipsProfile.FULL;
+		private boolean _pruning = VipsProfile.FULL.isPruningEnabled();
+		private int _pDoC = 11;
+		private int[] _pDoCs = new int[0];
+		private String _filename = "";
+		private File _outputDirectory = new File(System.getProperty("user.dir"));
+		private int _sizeTresholdWidth = 350;
+		private int _sizeTresholdHeight = 400;
+		private int _viewportWidth = 1000;
+		private int _viewportHeight = 600;
+		private VipsListener _listener = null;
+		private VipsStyleSheetCache _styleSheetCache = null;
+		private ForkJoinPool _forkJoinPool = null;
+		private int _parallelCutoff = VipsParser.DEFAULT_PARALLEL_CUTOFF;
+		private int[] _region = null;
+		private String _regionSelector = null;
+
+		/**
+		 * Enables or disables graphics output of VIPS algorithm.
+		 * @param enable True for enable, otherwise false.
+		 * @return Builder
+		 */
+		public Builder enableGraphicsOutput(boolean enable)
+		{
+			_graphicsOutput = enable;
+			return this;
+		}
+
+		/**
+		 * Enables or disables creation of new directory for every session.
+		 * @param enable True for enable, otherwise false.
+		 * @return Builder
+		 */
+		public Builder enableOutputToFolder(boolean enable)
+		{
+			_outputToFolder = enable;
+			return this;
+		}
+
+		/**
+		 * Enables or disables output XML character escaping.
+		 * @param enable True for enable, otherwise false.
+		 * @return Builder
+		 */
+		public Builder enableOutputEscaping(boolean enable)
+		{
+			_outputEscaping = enable;
+			return this;
+		}
+
+		/**
+		 * Enables or disables writing of XML output.
+		 * @param enable True for enable, otherwise false.
+		 * @return Builder
+		 */
+		public Builder enableXmlOutput(boolean enable)
+		{
+			_xmlOutput = enable;
+			return this;
+		}
+
+		/**
+		 * Enables or disables adaptive segmentation. When enabled, rounds,
+		 * that can't change result, are skipped - visual blocks and
+		 * separators were same as in previous round and no block depends on
+		 * round's size treshold. Result is same as with all rounds.
+		 * @param enable True for enable, otherwise false.
+		 * @return Builder
+		 */
+		public Builder enableAdaptiveSegmentation(boolean enable)
+		{
+			_adaptiveSegmentation = enable;
+			return this;
+		}
+
+		/**
+		 * Enables or disables incremental parsing. When enabled, block tree
+		 * is kept between rounds and only blocks bigger than new size treshold
+		 * are divided again.
+		 * @param enable True for enable, otherwise false.
+		 * @return Builder
+		 */
+		public Builder enableIncrementalParsing(boolean enable)
+		{
+			_incrementalParsing = enable;
+			return this;
+		}
+
+		/**
+		 * Enables or disables detection of separators as gaps between
+		 * visual blocks, that are found in one pass over sorted blocks.
+		 * Separators can slightly differ from default detection, when
+		 * visual blocks overlap.
+		 * @param enable True for enable, otherwise false.
+		 * @return Builder
+		 */
+		public Builder enableSweepLineDetection(boolean enable)
+		{
+			_sweepLineDetection = enable;
+			return this;
+		}
+
+		/**
+		 * Enables or disables one of VIPS rules used during block parsing.
+		 * All rules are enabled by default.
+		 * @param rule Number of rule (1-12)
+		 * @param enable True for enable, otherwise false.
+		 * @return Builder
+		 */
+		public Builder enableVipsRule(int rule, boolean enable)
+		{
+			if (rule < 1 || rule > 12)
+			{
+				System.err.println("VIPS rule must be between 1 and 12! Not " + rule + "!");
+			}
+			else
+			{
+				_enabledRules[rule] = enable;
+			}
+			return this;
+		}
+
+		/**
+		 * Sets profile of VIPS rules (e.g. VipsProfile.FAST for bulk
+		 * processing). Rules can be disabled further with
+		 * {@link #enableVipsRule(int, boolean)}.
+		 * @param profile Profile
+		 * @return Builder
+		 */
+		public Builder setProfile(VipsProfile profile)
+		{
+			_profile = profile;
+			_pruning = profile.isPruningEnabled();
+			return this;
+		}
+
+		/**
+		 * Enables or disables pruning of hidden subtrees. Subtrees without
+		 * any box visible on page are left out of block tree. Default value
+		 * is given by profile, so this has to be called after
+		 * {@link #setProfile(VipsProfile)}.
+		 * @param enable True for enable, otherwise false.
+		 * @return Builder
+		 */
+		public Builder enablePruning(boolean enable)
+		{
+			_pruning = enable;
+			return this;
+		}
+
+		/**
+		 * Creates table with all rules enabled
+		 * @return Table indexed by rule number
+		 */
+		private static boolean[] createEnabledRules()
+		{
+			boolean[] enabledRules = new boolean[13];
+			Arrays.fill(enabledRules, true);
+			return enabledRules;
+		}
+
+		/**
+		 * Sets permitted degree of coherence (pDoC) value.
+		 * @param value pDoC value.
+		 * @return Builder
+		 */
+		public Builder setPredefinedDoC(int value)
+		{
+			if (value <= 0 || value > 11)
+			{
+				System.err.println("pDoC value must be between 1 and 11! Not " + value + "!");
+			}
+			else
+			{
+				_pDoC = value;
+			}
+			return this;
+		}
+
+		/**
+		 * Sets several pDoC values. Page is segmented only once and output is
+		 * written for every value to file with -pdocN suffix.
+		 * @param values pDoC values, when empty only one output for pDoC from
+		 * {@link #setPredefinedDoC(int)} is written
+		 * @return Builder
+		 */
+		public Builder setPredefinedDoCs(int... values)
+		{
+			for (int value : values)
+			{
+				if (value <= 0 || value > 11)
+				{
+					System.err.println("pDoC value must be between 1 and 11! Not " + value + "!");
+					return this;
+				}
+			}
+
+			int[] sorted = values.clone();
+			Arrays.sort(sorted);
+
+			int count = 0;
+			for (int i = 0; i < sorted.length; i++)
+			{
+				if (i == 0 || sorted[i] != sorted[i - 1])
+					sorted[count++] = sorted[i];
+			}
+
+			_pDoCs = Arrays.copyOf(sorted, count);
+			return this;
+		}
+
+		/**
+		 * Sets output filename (without extension).
+		 * @param filename Filename
+		 * @return Builder
+		 */
+		public Builder setOutputFileName(String filename)
+		{
+			if (!filename.equals(""))
+			{
+				_filename = filename;
+			}
+			else
+			{
+				System.err.println("Invalid filename!");
+			}
+			return this;
+		}
+
+		/**
+		 * Sets directory where the output is written.
+		 * @param directory Output directory
+		 * @return Builder
+		 */
+		public Builder setOutputDirectory(File directory)
+		{
+			_outputDirectory = directory;
+			return this;
+		}
+
+		/**
+		 * Sets element's size treshold used in first iteration.
+		 * @param width Width treshold
+		 * @param height Height treshold
+		 * @return Builder
+		 */
+		public Builder setSizeTreshold(int width, int height)
+		{
+			_sizeTresholdWidth = width;
+			_sizeTresholdHeight = height;
+			return this;
+		}
+
+		/**
+		 * Sets size of viewport used for page rendering.
+		 * @param width Viewport's width
+		 * @param height Viewport's height
+		 * @return Builder
+		 */
+		public Builder setViewportSize(int width, int height)
+		{
+			_viewportWidth = width;
+			_viewportHeight = height;
+			return this;
+		}
+
+		/**
+		 * Sets listener, that receives phase durations and counters from all
+		 * sessions. Listener must be thread-safe, when sessions run in
+		 * parallel. Nothing is measured without listener.
+		 * @param listener Listener or null
+		 * @return Builder
+		 */
+		public Builder setListener(VipsListener listener)
+		{
+			_listener = listener;
+			return this;
+		}
+
+		/**
+		 * Sets cache of external style sheets shared by all sessions (e.g.
+		 * one cache for pages from same site).
+		 * @param cache Cache or null
+		 * @return Builder
+		 */
+		public Builder setStyleSheetCache(VipsStyleSheetCache cache)
+		{
+			_styleSheetCache = cache;
+			return this;
+		}
+
+		/**
+		 * Sets pool for parallel division of blocks on big pages. Results
+		 * are same as with sequential division, which is used by default.
+		 * @param forkJoinPool Pool (e.g. ForkJoinPool.commonPool()) or null
+		 * @return Builder
+		 */
+		public Builder setForkJoinPool(ForkJoinPool forkJoinPool)
+		{
+			_forkJoinPool = forkJoinPool;
+			return this;
+		}
+
+		/**
+		 * Sets minimal number of boxes in subtree, that is divided by one
+		 * task during parallel division.
+		 * @param cutoff Number of boxes in subtree
+		 * @return Builder
+		 */
+		public Builder setParallelCutoff(int cutoff)
+		{
+			_parallelCutoff = cutoff;
+			return this;
+		}
+
+		/**
+		 * Restricts segmentation to rectangle of page (e.g. area above the
+		 * fold). Only blocks inside of rectangle are found and separators
+		 * are detected only inside of it.
+		 * @param x X coordinate
+		 * @param y Y coordinate
+		 * @param width Width
+		 * @param height Height
+		 * @return Builder
+		 */
+		public Builder setRegion(int x, int y, int width, int height)
+		{
+			_region = new int[] { x, y, width, height };
+			return this;
+		}
+
+		/**
+		 * Restricts segmentation to subtree of first element matching CSS
+		 * selector (e.g. #main). When also rectangle is set, segmentation is
+		 * restricted to their intersection.
+		 * @param selector Selector or null for whole page
+		 * @return Builder
+		 * @throws IllegalArgumentException When selector isn't valid
+		 */
+		public Builder setRegionSelector(String selector)
+		{
+			// parse selector now, so invalid selector is rejected here
+			if (selector != null)
+				new VipsElementSelector(selector);
+
+			_regionSelector = selector;
+			return this;
+		}
+
+		/**
+		 * Creates engine with current configuration.
+		 * @return New engine
+		 */
+		public VipsEngine build()
+		{
+			return new VipsEngine(this);
+		}
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * Tomas Popela, 2012
+ * VIPS - Visual Internet Page Segmentation
+ * Module - VipsImageExporter.java
+ */
+
+package org.fit.vips;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.fit.cssbox.layout.BrowserCanvas;
+
+/**
+ * Exports page, visual blocks and separators to images.
+ * <p>
+ * This is the only class that uses AWT images, the segmentation itself
+ * doesn't load it, unless graphics output is enabled.
+ * @author Tomas Popela
+ *
+ */
+public final class VipsImageExporter {
+
+	private final int _pageWidth;
+	private final int _pageHeight;
+	private final String _outputFolder;
+
+	/**
+	 * Creates exporter for page with given size
+	 * @param pageWidth Page's width
+	 * @param pageHeight Page's height
+	 * @param outputFolder Folder, where the images are saved
+	 */
+	public VipsImageExporter(int pageWidth, int pageHeight, String outputFolder)
+	{
+		this._pageWidth = pageWidth;
+		this._pageHeight = pageHeight;
+		this._outputFolder = outputFolder;
+	}
+
+	/**
+	 * Creates detector, that draws to image
+	 * @return Detector
+	 */
+	private VipsSeparatorGraphicsDetector createDetector()
+	{
+		VipsSeparatorGraphicsDetector detector = new VipsSeparatorGraphicsDetector(_pageWidth, _pageHeight);
+		detector.setOutputFolder(_outputFolder);
+		return detector;
+	}
+
+	/**
+	 * Exports rendered page to image.
+	 * @param browserCanvas Canvas with rendered page
+	 */
+	public void exportPage(BrowserCanvas browserCanvas)
+	{
+		try
+		{
+			BufferedImage page = browserCanvas.getImage();
+			ImageIO.write(page, "png", new File(_outputFolder, "page.png"));
+		} catch (Exception e)
+		{
+			System.err.println("Error: " + e.getMessage());
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Exports blocks from first round together with global separators
+	 * @param vipsBlocks Tree of blocks
+	 * @param iteration Number of round
+	 */
+	public void exportBlocks(VipsBlock vipsBlocks, int iteration)
+	{
+		VipsSeparatorGraphicsDetector detector = createDetector();
+		detector.setVipsBlock(vipsBlocks);
+		detector.fillPool();
+		detector.saveToImage("blocks" + iteration);
+		detector.setCleanUpSeparators(0);
+		detector.detectHorizontalSeparators();
+		detector.detectVerticalSeparators();
+		detector.exportHorizontalSeparatorsToImage();
+		detector.exportVerticalSeparatorsToImage();
+		detector.exportAllToImage();
+	}
+
+	/**
+	 * Exports visual blocks
+	 * @param visualBlocks Visual blocks
+	 * @param iteration Number of round
+	 */
+	public void exportVisualBlocks(List<VipsBlock> visualBlocks, int iteration)
+	{
+		VipsSeparatorGraphicsDetector detector = createDetector();
+		detector.setVisualBlocks(visualBlocks);
+		detector.fillPool();
+		detector.saveToImage("blocks" + iteration);
+	}
+
+	/**
+	 * Exports separators of visual structure
+	 * @param horizontalSeparators Horizontal separators
+	 * @param verticalSeparators Vertical separators
+	 * @param visualBlocks Visual blocks
+	 * @param iteration Number of round
+	 */
+	public void exportSeparators(List<Separator> horizontalSeparators, List<Separator> verticalSeparators,
+			List<VipsBlock> visualBlocks, int iteration)
+	{
+		VipsSeparatorGraphicsDetector detector = createDetector();
+
+		detector.setHorizontalSeparators(horizontalSeparators);
+		detector.exportHorizontalSeparatorsToImage(iteration);
+
+		detector.setVerticalSeparators(verticalSeparators);
+		detector.exportVerticalSeparatorsToImage(iteration);
+
+		detector.setVisualBlocks(visualBlocks);
+		detector.exportAllToImage(iteration);
+	}
+}
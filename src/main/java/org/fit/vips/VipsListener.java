@@ -0,0 +1,38 @@
+/*
+ * Tomas Popela, 2012
+ * VIPS - Visual Internet Page Segmentation
+ * Module - VipsListener.java
+ */
+
+package org.fit.vips;
+
+/**
+ * Receives durations of segmentation phases and counters of segmented page.
+ * <p>
+ * Listener set on VipsEngine is shared by all sessions, so it has to be
+ * thread-safe. When no listener is set, nothing is measured.
+ * @author Tomas Popela
+ *
+ */
+public interface VipsListener {
+
+	/**
+	 * Called when phase of segmentation is finished.
+	 * @param session Session that segments the page
+	 * @param phase Finished phase
+	 * @param iteration Number of round (starting with 1) or 0 for phases
+	 * that run once per page
+	 * @param duration Duration of phase in nanoseconds
+	 */
+	void phaseFinished(VipsSession session, VipsPhase phase, int iteration, long duration);
+
+	/**
+	 * Called when value of counter is known.
+	 * @param session Session that segments the page
+	 * @param counter Counter
+	 * @param iteration Number of round (starting with 1) or 0 for final value
+	 * for the page
+	 * @param value Value of counter
+	 */
+	void counterReported(VipsSession session, VipsCounter counter, int iteration, long value);
+}
@@ -0,0 +1,81 @@
+/*
+ * Tomas Popela, 2012
+ * VIPS - Visual Internet Page Segmentation
+ * Module - VipsMetrics.java
+ */
+
+package org.fit.vips;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe listener that sums phase durations and final counters over
+ * all segmented pages.
+ * @author Tomas Popela
+ *
+ */
+public class VipsMetrics implements VipsListener {
+
+	private final AtomicLongArray _phaseTimes = new AtomicLongArray(VipsPhase.values().length);
+	private final AtomicLongArray _phaseCounts = new AtomicLongArray(VipsPhase.values().length);
+	private final AtomicLongArray _counters = new AtomicLongArray(VipsCounter.values().length);
+
+	@Override
+	public void phaseFinished(VipsSession session, VipsPhase phase, int iteration, long duration)
+	{
+		_phaseTimes.addAndGet(phase.ordinal(), duration);
+		_phaseCounts.incrementAndGet(phase.ordinal());
+	}
+
+	@Override
+	public void counterReported(VipsSession session, VipsCounter counter, int iteration, long value)
+	{
+		// only final values are summed, values from rounds would be counted repeatedly
+		if (iteration == 0)
+			_counters.addAndGet(counter.ordinal(), value);
+	}
+
+	/**
+	 * Returns total time spent in phase
+	 * @param phase Phase
+	 * @return Time in nanoseconds
+	 */
+	public long getPhaseTime(VipsPhase phase)
+	{
+		return _phaseTimes.get(phase.ordinal());
+	}
+
+	/**
+	 * Returns how many times the phase was run
+	 * @param phase Phase
+	 * @return Number of runs
+	 */
+	public long getPhaseCount(VipsPhase phase)
+	{
+		return _phaseCounts.get(phase.ordinal());
+	}
+
+	/**
+	 * Returns sum of final values of counter over all pages
+	 * @param counter Counter
+	 * @return Sum of values
+	 */
+	public long getCounter(VipsCounter counter)
+	{
+		return _counters.get(counter.ordinal());
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder result = new StringBuilder();
+
+		for (VipsPhase phase : VipsPhase.values())
+			result.append(String.format("%-24s %12.3f ms %8d x%n", phase, getPhaseTime(phase) / 1000000.0, getPhaseCount(phase)));
+
+		for (VipsCounter counter : VipsCounter.values())
+			result.append(String.format("%-24s %12d%n", counter, getCounter(counter)));
+
+		return result.toString();
+	}
+}
@@ -9,6 +9,8 @@ package org.fit.vips;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.StringWriter;
+import java.util.IdentityHashMap;
+import java.util.Map;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -36,6 +38,11 @@ public final class VipsOutput {
 	private int _pDoC = 0;
 	private int _order = 1;
 	private String _filename = "VIPSResult";
+	private String _outputFolder = "";
+	private String _suffix = "";
+	// source indexes and contents of visual structures, shared by outputs for all pDoC values
+	private final Map<VisualStructure, String> _sourceIndexes = new IdentityHashMap<VisualStructure, String>();
+	private final Map<VisualStructure, String[]> _contents = new IdentityHashMap<VisualStructure, String[]>();
 
 	public VipsOutput() {
 	}
@@ -67,6 +74,62 @@ public final class VipsOutput {
 		return content;
 	}
 
+	/**
+	 * Sets source code and text content of visual structure's blocks to
+	 * layout node. Values are computed only once for every visual structure.
+	 * @param layoutNode Layout node
+	 * @param visualStructure Visual structure
+	 */
+	private void setContent(Element layoutNode, VisualStructure visualStructure)
+	{
+		String[] contents = _contents.get(visualStructure);
+
+		if (contents == null)
+		{
+			String src = "";
+			String content = "";
+			for (VipsBlock block : visualStructure.getNestedBlocks())
+			{
+				ElementBox elementBox = block.getElementBox();
+
+				if (elementBox == null)
+					continue;
+
+				if (!elementBox.getNode().getNodeName().equals("Xdiv") &&
+						!elementBox.getNode().getNodeName().equals("Xspan"))
+					src += getSource(elementBox.getElement());
+				else
+					src += elementBox.getText();
+
+				content += elementBox.getText() + " ";
+
+			}
+			contents = new String[] { src, content };
+			_contents.put(visualStructure, contents);
+		}
+
+		layoutNode.setAttribute("SRC", contents[0]);
+		layoutNode.setAttribute("Content", contents[1]);
+	}
+
+	/**
+	 * Returns source index of visual structure
+	 * @param visualStructure Visual structure
+	 * @return Source index
+	 */
+	private String getSourceIndex(VisualStructure visualStructure)
+	{
+		String sourceIndex = _sourceIndexes.get(visualStructure);
+
+		if (sourceIndex == null)
+		{
+			sourceIndex = visualStructure.getSourceIndex();
+			_sourceIndexes.put(visualStructure, sourceIndex);
+		}
+
+		return sourceIndex;
+	}
+
 	/**
 	 * Append node from given visual structure to parent node
 	 * @param parentNode Given visual structure
@@ -77,7 +140,7 @@ public final class VipsOutput {
 		Element layoutNode = doc.createElement("LayoutNode");
 
 		layoutNode.setAttribute("FrameSourceIndex", String.valueOf(visualStructure.getFrameSourceIndex()));
-		layoutNode.setAttribute("SourceIndex", visualStructure.getSourceIndex());
+		layoutNode.setAttribute("SourceIndex", getSourceIndex(visualStructure));
 		layoutNode.setAttribute("DoC", String.valueOf(visualStructure.getDoC()));
 		layoutNode.setAttribute("ContainImg", String.valueOf(visualStructure.containImg()));
 		layoutNode.setAttribute("IsImg", String.valueOf(visualStructure.isImg()));
@@ -105,28 +168,7 @@ public final class VipsOutput {
 			if (visualStructure.getChildrenVisualStructures().size() == 0)
 			{
 				if (visualStructure.getNestedBlocks().size() > 0)
-				{
-					String src = "";
-					String content = "";
-					for (VipsBlock block : visualStructure.getNestedBlocks())
-					{
-						ElementBox elementBox = block.getElementBox();
-
-						if (elementBox == null)
-							continue;
-
-						if (!elementBox.getNode().getNodeName().equals("Xdiv") &&
-								!elementBox.getNode().getNodeName().equals("Xspan"))
-							src += getSource(elementBox.getElement());
-						else
-							src += elementBox.getText();
-
-						content += elementBox.getText() + " ";
-
-					}
-					layoutNode.setAttribute("SRC", src);
-					layoutNode.setAttribute("Content", content);
-				}
+					setContent(layoutNode, visualStructure);
 			}
 
 			parentNode.appendChild(layoutNode);
@@ -138,33 +180,24 @@ public final class VipsOutput {
 		{
 			// "stop" segmentation
 			if (visualStructure.getNestedBlocks().size() > 0)
-			{
-				String src = "";
-				String content = "";
-				for (VipsBlock block : visualStructure.getNestedBlocks())
-				{
-					ElementBox elementBox = block.getElementBox();
-
-					if (elementBox == null)
-						continue;
-
-					if (!elementBox.getNode().getNodeName().equals("Xdiv") &&
-							!elementBox.getNode().getNodeName().equals("Xspan"))
-						src += getSource(elementBox.getElement());
-					else
-						src += elementBox.getText();
-
-					content += elementBox.getText() + " ";
-
-				}
-				layoutNode.setAttribute("SRC", src);
-				layoutNode.setAttribute("Content", content);
-			}
+				setContent(layoutNode, visualStructure);
 
 			parentNode.appendChild(layoutNode);
 		}
 	}
 
+	/**
+	 * Returns file, where the output XML is written
+	 * @return Output file
+	 */
+	private File getOutputFile()
+	{
+		if (_outputFolder.equals(""))
+			return new File(_filename + _suffix + ".xml");
+
+		return new File(_outputFolder, _filename + _suffix + ".xml");
+	}
+
 	/**
 	 * Writes visual structure to output XML
 	 * @param visualStructure Given visual structure
@@ -178,6 +211,7 @@ public final class VipsOutput {
 			DocumentBuilder docBuilder = docFactory.newDocumentBuilder();
 
 			doc = docBuilder.newDocument();
+			_order = 1;
 			Element vipsElement = doc.createElement("VIPSPage");
 
 			String pageTitle = pageViewport.getRootElement().getOwnerDocument().getElementsByTagName("title").item(0).getTextContent();
@@ -205,7 +239,7 @@ public final class VipsOutput {
 
 			if (_escapeOutput)
 			{
-				StreamResult result = new StreamResult(new File(_filename + ".xml"));
+				StreamResult result = new StreamResult(getOutputFile());
 				transformer.transform(source, result);
 			}
 			else
@@ -218,7 +252,7 @@ public final class VipsOutput {
 				result = result.replaceAll("&lt;", "<");
 				result = result.replaceAll("&quot;", "\"");
 
-				FileWriter fstream = new FileWriter(_filename + ".xml");
+				FileWriter fstream = new FileWriter(getOutputFile());
 				fstream.write(result);
 				fstream.close();
 			}
@@ -230,6 +264,28 @@ public final class VipsOutput {
 		}
 	}
 
+	/**
+	 * Writes visual structure to output XML once for every given pDoC value.
+	 * Name of every file is suffixed with -pdocN, where N is pDoC value.
+	 * @param visualStructure Given visual structure
+	 * @param pageViewport Page's viewport
+	 * @param pDoCs pDoC values
+	 */
+	public void writeXML(VisualStructure visualStructure, Viewport pageViewport, int[] pDoCs)
+	{
+		int pDoC = _pDoC;
+
+		for (int value : pDoCs)
+		{
+			setPDoC(value);
+			_suffix = "-pdoc" + value;
+			writeXML(visualStructure, pageViewport);
+		}
+
+		_pDoC = pDoC;
+		_suffix = "";
+	}
+
 	/**
 	 * Enables or disables output escaping
 	 * @param value
@@ -268,4 +324,13 @@ public final class VipsOutput {
 		}
 
 	}
+
+	/**
+	 * Sets folder, where the output file is written
+	 * @param folder Output folder
+	 */
+	public void setOutputFolder(String folder)
+	{
+		_outputFolder = folder;
+	}
 }
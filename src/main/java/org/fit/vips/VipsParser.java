@@ -7,7 +7,15 @@
 package org.fit.vips;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import org.fit.cssbox.layout.Box;
 import org.fit.cssbox.layout.ElementBox;
@@ -21,9 +29,57 @@ import org.w3c.dom.Node;
  */
 public class VipsParser {
 
+	// tags, that are used by VIPS rules
+	private static final int TAG_OTHER = 0;
+	private static final int TAG_TEXT = 1;
+	private static final int TAG_XDIV = 2;
+	private static final int TAG_TABLE = 3;
+	private static final int TAG_TR = 4;
+	private static final int TAG_TD = 5;
+	private static final int TAG_P = 6;
+	private static final int TAG_UL = 7;
+	private static final int TAG_LI = 8;
+	private static final int TAG_A = 9;
+	private static final int TAG_IMG = 10;
+	private static final int TAG_INPUT = 11;
+	private static final int TAG_HR = 12;
+	private static final int TAG_EM = 13;
+	private static final int TAG_CODE = 14;
+	private static final int TAG_DIV = 15;
+	private static final int TAG_SPAN = 16;
+	private static final int TAG_SUP = 17;
+
+	private static final Map<String, Integer> TAG_IDS = new HashMap<String, Integer>();
+
+	static
+	{
+		String[] tags = { "text", "Xdiv", "table", "tr", "td", "p", "ul", "li", "a",
+				"img", "input", "hr", "em", "code", "div", "span", "sup" };
+		for (int i = 0; i < tags.length; i++)
+			TAG_IDS.put(tags[i], i + 1);
+	}
+
+	// rules applied (in given order) on different types of nodes
+	private static final int[] OTHER_NODE_RULES = { 1, 2, 3, 4, 6, 8, 9, 11 };
+	private static final int[] P_NODE_RULES = { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12 };
+	private static final int[] TD_NODE_RULES = { 1, 2, 3, 4, 8, 9, 10, 12 };
+	private static final int[] TR_NODE_RULES = { 1, 2, 3, 7, 9, 12 };
+	private static final int[] TABLE_NODE_RULES = { 1, 2, 3, 7, 9, 12 };
+	private static final int[] INLINE_NODE_RULES = { 1, 2, 3, 4, 5, 6, 8, 9, 12 };
+
+	// DoC of blocks that aren't divided by rules eight, nine and twelve (indexed by tag)
+	private static final int[] RULE_EIGHT_DOC = createDoCTable(8, TAG_XDIV, 7, TAG_CODE, 7, TAG_DIV, 5);
+	private static final int[] RULE_NINE_DOC = createDoCTable(8, TAG_A, 11);
+	private static final int[] RULE_TWELVE_DOC = createDoCTable(333, TAG_XDIV, 7, TAG_LI, 8,
+			TAG_SPAN, 8, TAG_SUP, 8, TAG_IMG, 8);
+
 	private VipsBlock _vipsBlocks = null;
-	private VipsBlock _currentVipsBlock = null;
-	private VipsBlock _tempVipsBlock = null;
+	// styles of boxes from parser's viewport
+	private final VipsStyleTable _styleTable = new VipsStyleTable();
+	// positions of page's nodes in document order
+	private final VipsDocumentOrder _documentOrder = new VipsDocumentOrder();
+	// flat copy of block tree, arrays are reused by all parses
+	private final VipsBlockTable _blockTable = new VipsBlockTable();
 
 	private int _sizeTresholdWidth = 0;
 	private int _sizeTresholdHeight = 0;
@@ -31,6 +87,233 @@ public class VipsParser {
 	private int _visualBlocksCount = 0;
 	private int _pageWidth = 0;
 	private int _pageHeight = 0;
+	// root of segmented subtree (null for body) and segmented region
+	private ElementBox _root = null;
+	private int _regionX = 0;
+	private int _regionY = 0;
+	private int _regionWidth = 0;
+	private int _regionHeight = 0;
+	private boolean _regionSet = false;
+	// enabled VIPS rules (indexed by rule number)
+	private boolean[] _enabledRules = createEnabledRules();
+	private boolean _subtreeValidation = true;
+	// hidden subtrees are left out of block tree
+	private boolean _pruning = false;
+	// number of pruned subtrees and number of boxes in them
+	private long _prunedSubtrees = 0;
+	private long _prunedBoxes = 0;
+	// number of nodes decided by rules (indexed by rule number, 0 if no rule succeeded)
+	private long[] _ruleDecisions = new long[13];
+	// pool for dividing of independent subtrees or null for sequential division
+	private ForkJoinPool _forkJoinPool = null;
+	/**
+	 * Default minimal size of subtree divided in separate task, counted in
+	 * boxes of subtree (every box has one block in block tree)
+	 */
+	public static final int DEFAULT_PARALLEL_CUTOFF = 4096;
+	// minimal number of boxes in subtree, that is divided in separate task
+	private int _parallelCutoff = DEFAULT_PARALLEL_CUTOFF;
+
+	private boolean _incrementalParsing = false;
+	// size treshold used in previous round or -1 if tree wasn't built yet
+	private int _lastSizeTreshold = -1;
+	// blocks decided by size rules with size, that the rule compared with treshold
+	private Map<VipsBlock, Integer> _sizeDecisions = Collections.synchronizedMap(new IdentityHashMap<VipsBlock, Integer>());
+	// blocks, that were set as visual blocks by parent's rule seven
+	private Set<VipsBlock> _markedBlocks = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<VipsBlock, Boolean>()));
+	// last block (in tree order) created for every DOM node
+	private Map<Node, VipsBlock> _blocksByNode = new IdentityHashMap<Node, VipsBlock>();
+	// structural hash of every DOM subtree (computed when rule three needs it)
+	private Map<Node, Integer> _subtreeHashes = null;
+	// top level blocks by structural hash of their DOM subtree (built again
+	// after top level blocks are replaced)
+	private Map<Integer, List<VipsBlock>> _topLevelBlocksByHash = null;
+	// aggregated values of subtree for every box, boxes don't change between rounds
+	private Map<Box, SubtreeAggregate> _aggregates = new IdentityHashMap<Box, SubtreeAggregate>();
+	// work stacks for traversals (trees can be deeper than thread's stack),
+	// parallel division uses only node stacks and only under parser's lock
+	private final VipsTraversalStack<VipsBlock> _blockStack = new VipsTraversalStack<VipsBlock>();
+	private final VipsTraversalStack<VipsBlock> _refineStack = new VipsTraversalStack<VipsBlock>();
+	private final VipsTraversalStack<VipsBlock> _parentStack = new VipsTraversalStack<VipsBlock>();
+	private final VipsTraversalStack<Box> _boxStack = new VipsTraversalStack<Box>();
+	private final VipsTraversalStack<Node> _nodeStack = new VipsTraversalStack<Node>();
+	private final VipsTraversalStack<Node> _patternStack = new VipsTraversalStack<Node>();
+
+	/**
+	 * Values aggregated from box and all its descendants, that are needed
+	 * by VIPS rules.
+	 */
+	private static class SubtreeAggregate {
+		// length of text in text boxes (without empty and whitespace texts)
+		int textLength = 0;
+		// number of text boxes
+		int textBoxes = 0;
+		// number of valid boxes (see checkValidChildrenNodes)
+		int validNodes = 0;
+		// contains visible img or input element
+		boolean visibleImgOrInput = false;
+		// contains hr element
+		boolean hr = false;
+		// contains box with non zero width and height
+		boolean sizedBox = false;
+		// box and all its descendants are hidden (see isVisibleInRegion)
+		boolean hidden = true;
+		// number of boxes in subtree
+		int boxes = 1;
+		// tag of box itself
+		int tag = TAG_OTHER;
+	}
+
+	/**
+	 * Positions of blocks in order of tree (taken from block table) and pairs
+	 * of blocks, where division of one block depends on the other one.
+	 */
+	private static class DivisionIndex {
+		// divided tree in order of tree
+		final VipsBlockTable table;
+		// pairs of dependent positions (lower one in high bits) in ascending order
+		long[] dependencies = null;
+
+		DivisionIndex(VipsBlockTable table)
+		{
+			this.table = table;
+		}
+
+		/**
+		 * Returns number of blocks in block's subtree
+		 * @param vipsBlock Block
+		 * @return Number of blocks
+		 */
+		int getSize(VipsBlock vipsBlock)
+		{
+			return table.getSubtreeSize(table.indexOf(vipsBlock));
+		}
+
+		/**
+		 * Checks if subtrees of block's children can be divided in parallel.
+		 * There have to be at least two big subtrees and the only allowed
+		 * dependencies between subtrees are dependencies between children
+		 * themselves (children are divided in order of tree).
+		 * @param vipsBlock Divided block
+		 * @param cutoff Minimal number of blocks in big subtree
+		 * @return True if children can be divided in parallel, otherwise false
+		 */
+		boolean isDividableInParallel(VipsBlock vipsBlock, int cutoff)
+		{
+			List<VipsBlock> children = vipsBlock.getChildren();
+			int[] starts = new int[children.size()];
+			int bigSubtrees = 0;
+
+			for (int i = 0; i < starts.length; i++)
+			{
+				starts[i] = table.indexOf(children.get(i));
+				if (table.getSubtreeSize(starts[i]) >= cutoff)
+					bigSubtrees++;
+			}
+
+			if (bigSubtrees < 2)
+				return false;
+
+			int position = table.indexOf(vipsBlock);
+			int last = position + table.getSubtreeSize(position) - 1;
+			// first dependency inside of subtree (block itself is already divided)
+			int first = -Arrays.binarySearch(dependencies, (long) (position + 1) << 32) - 1;
+
+			for (int k = first; k < dependencies.length; k++)
+			{
+				int lower = (int) (dependencies[k] >>> 32);
+				int upper = (int) dependencies[k];
+
+				if (lower > last)
+					break;
+				if (upper > last)
+					continue;
+
+				int lowerChild = findChild(starts, lower);
+				int upperChild = findChild(starts, upper);
+
+				if (lowerChild != upperChild && (starts[lowerChild] != lower || starts[upperChild] != upper))
+					return false;
+			}
+
+			return true;
+		}
+
+		/**
+		 * Finds child, whose subtree contains position
+		 * @param starts Positions of children
+		 * @param position Position
+		 * @return Index of child
+		 */
+		private static int findChild(int[] starts, int position)
+		{
+			int i = Arrays.binarySearch(starts, position);
+			return (i >= 0) ? i : -i - 2;
+		}
+	}
+
+	/**
+	 * Task, that divides block's subtree
+	 */
+	@SuppressWarnings("serial")
+	private class DivisionTask extends RecursiveAction {
+		private final VipsBlock _root;
+		private final boolean _rootDivided;
+		private final DivisionIndex _index;
+		// counters of decisions made by this task (indexed by rule number)
+		private final long[] _decisions = new long[13];
+
+		DivisionTask(VipsBlock root, boolean rootDivided, DivisionIndex index)
+		{
+			this._root = root;
+			this._rootDivided = rootDivided;
+			this._index = index;
+		}
+
+		@Override
+		protected void compute()
+		{
+			divideVipsBlocks(_root, _rootDivided, _index, _decisions);
+		}
+	}
+
+	/**
+	 * Creates table of DoC values indexed by tag
+	 * @param defaultDoC DoC of tags, that aren't listed
+	 * @param tagsAndDoCs Pairs of tag and its DoC
+	 * @return Table
+	 */
+	private static int[] createDoCTable(int defaultDoC, int... tagsAndDoCs)
+	{
+		int[] table = new int[TAG_IDS.size() + 1];
+		Arrays.fill(table, defaultDoC);
+
+		for (int i = 0; i + 1 < tagsAndDoCs.length; i += 2)
+			table[tagsAndDoCs[i]] = tagsAndDoCs[i + 1];
+
+		return table;
+	}
+
+	/**
+	 * Creates table with all rules enabled
+	 * @return Table indexed by rule number
+	 */
+	private static boolean[] createEnabledRules()
+	{
+		boolean[] enabledRules = new boolean[13];
+		Arrays.fill(enabledRules, true);
+		return enabledRules;
+	}
+
+	/**
+	 * Returns tag id of box
+	 * @param box Box
+	 * @return Tag id
+	 */
+	private int getTag(Box box)
+	{
+		return getAggregate(box).tag;
+	}
 
 	/**
 	 * Default constructor
@@ -39,11 +322,13 @@ public class VipsParser {
 	 */
 	public VipsParser(Viewport viewport) {
 		this._viewport = viewport;
-		this._vipsBlocks = new VipsBlock();
+		this._vipsBlocks = createVipsBlock();
 		this._sizeTresholdHeight = 80;
 		this._sizeTresholdWidth = 80;
 		this._pageWidth = viewport.getWidth();
 		this._pageHeight = viewport.getHeight();
+		this._regionWidth = _pageWidth;
+		this._regionHeight = _pageHeight;
 	}
 
 	/**
@@ -54,9 +339,13 @@ public class VipsParser {
 	 */
 	public VipsParser(Viewport viewport, int sizeTresholdWidth, int sizeTresholdHeight) {
 		this._viewport = viewport;
-		this._vipsBlocks = new VipsBlock();
+		this._vipsBlocks = createVipsBlock();
 		this._sizeTresholdHeight = sizeTresholdHeight;
 		this._sizeTresholdWidth = sizeTresholdWidth;
+		this._pageWidth = viewport.getWidth();
+		this._pageHeight = viewport.getHeight();
+		this._regionWidth = _pageWidth;
+		this._regionHeight = _pageHeight;
 	}
 
 	/**
@@ -66,13 +355,38 @@ public class VipsParser {
 	{
 		if (_viewport != null)
 		{
-			this._vipsBlocks = new VipsBlock();
-			_visualBlocksCount = 0;
+			int sizeTreshold = _sizeTresholdWidth * _sizeTresholdHeight;
+
+			if (_incrementalParsing && _lastSizeTreshold >= 0 && sizeTreshold <= _lastSizeTreshold)
+			{
+				refineVipsBlockTree(_vipsBlocks, null, 0, sizeTreshold);
+			}
+			else
+			{
+				this._vipsBlocks = createVipsBlock();
+				_sizeDecisions.clear();
+				_markedBlocks.clear();
+				_blocksByNode.clear();
+				_topLevelBlocksByHash = null;
+
+				ElementBox root = (_root != null) ? _root : _viewport.getElementBoxByName("body", false);
+				if (!_aggregates.containsKey(root))
+				{
+					_aggregates.clear();
+					computeAggregates(root);
+				}
 
-			constructVipsBlockTree(_viewport.getElementBoxByName("body", false), _vipsBlocks);
-			divideVipsBlockTree(_vipsBlocks);
+				_vipsBlocks.setBox(root);
+				_prunedSubtrees = 0;
+				_prunedBoxes = 0;
+				constructVipsBlockTree(_vipsBlocks, null);
+				divideVipsBlockTree(_vipsBlocks);
+			}
+
+			_lastSizeTreshold = sizeTreshold;
 
-			getVisualBlocksCount(_vipsBlocks);
+			_blockTable.load(_vipsBlocks);
+			_visualBlocksCount = _blockTable.getVisualBlocksCount();
 			//System.err.println(String.valueOf("We have " + _visualBlocksCount + " visual blocks."));
 		}
 		else
@@ -80,152 +394,560 @@ public class VipsParser {
 	}
 
 	/**
-	 * Counts number of visual blocks in visual structure
-	 * @param vipsBlock Visual structure
+	 * Enables or disables incremental parsing. When enabled, block tree is kept
+	 * between calls of parse() and only blocks, whose division depends on
+	 * size treshold that was lowered, are divided again.
+	 * @param enable True for enable, otherwise false.
 	 */
-	private void getVisualBlocksCount(VipsBlock vipsBlock)
+	public void enableIncrementalParsing(boolean enable)
 	{
-		if (vipsBlock.isVisualBlock())
-			_visualBlocksCount++;
+		this._incrementalParsing = enable;
+		this._lastSizeTreshold = -1;
+	}
+
+	/**
+	 * Divides again blocks from previous round, that were decided by size
+	 * rules and that are bigger than new size treshold.
+	 * @param vipsBlock Actual block
+	 * @param parent Parent of actual block or null for root
+	 * @param index Index of actual block in parent's children
+	 * @param sizeTreshold New size treshold
+	 */
+	private void refineVipsBlockTree(VipsBlock vipsBlock, VipsBlock parent, int index, int sizeTreshold)
+	{
+		_refineStack.push(vipsBlock, index);
+		_parentStack.push(parent);
+
+		while (!_refineStack.isEmpty())
+		{
+			vipsBlock = _refineStack.pop();
+			index = _refineStack.getValue();
+			parent = _parentStack.pop();
+
+			Integer size = _sizeDecisions.get(vipsBlock);
+
+			if (size != null && size > sizeTreshold)
+			{
+				Set<VipsBlock> replacedBlocks = Collections.newSetFromMap(new IdentityHashMap<VipsBlock, Boolean>());
+				collectVipsBlocks(vipsBlock, replacedBlocks);
+
+				// block is created again, so its state is same as in full parsing
+				VipsBlock newVipsBlock = createVipsBlock();
+				newVipsBlock.setBox(vipsBlock.getBox());
+				constructVipsBlockTree(newVipsBlock, replacedBlocks);
+				_sizeDecisions.remove(vipsBlock);
+
+				if (_markedBlocks.remove(vipsBlock))
+					markBlock(newVipsBlock);
+
+				if (parent == null)
+					_vipsBlocks = newVipsBlock;
+				else
+					parent.setChild(index, newVipsBlock);
+
+				// index of rule three holds replaced top level blocks
+				if (parent == null || parent == _vipsBlocks)
+					_topLevelBlocksByHash = null;
+
+				divideVipsBlockTree(newVipsBlock);
+			}
+			else if (vipsBlock.isAlreadyDivided())
+			{
+				List<VipsBlock> children = vipsBlock.getChildren();
+				for (int i = children.size() - 1; i >= 0; i--)
+				{
+					if (!(children.get(i).getBox() instanceof TextBox))
+					{
+						_refineStack.push(children.get(i), i);
+						_parentStack.push(vipsBlock);
+					}
+				}
+			}
+		}
+	}
+	/**
+	 * Collects all blocks from block's subtree
+	 * @param vipsBlock Block
+	 * @param blocks Collected blocks
+	 */
+	private void collectVipsBlocks(VipsBlock vipsBlock, Set<VipsBlock> blocks)
+	{
+		_blockStack.push(vipsBlock);
 
-		for (VipsBlock vipsBlockChild : vipsBlock.getChildren())
+		while (!_blockStack.isEmpty())
 		{
-			if (!(vipsBlockChild.getBox() instanceof TextBox))
-				getVisualBlocksCount(vipsBlockChild);
+			VipsBlock block = _blockStack.pop();
+			blocks.add(block);
+
+			for (VipsBlock child : block.getChildren())
+				_blockStack.push(child);
 		}
 	}
+	/**
+	 * Remembers that block's division depends on size treshold.
+	 * @param vipsBlock Block
+	 * @param size Size compared with treshold
+	 */
+	private void recordSizeDecision(VipsBlock vipsBlock, int size)
+	{
+		_sizeDecisions.put(vipsBlock, size);
+	}
 
-	private void findVisualBlocks(VipsBlock vipsBlock, List<VipsBlock> list)
+	/**
+	 * Checks if block tree would change, when page is parsed again with
+	 * given (smaller) size treshold.
+	 * @param sizeTreshold Size treshold (width * height)
+	 * @return True if some block was decided by size rules with bigger
+	 * size, otherwise false
+	 */
+	public boolean dependsOnSizeTreshold(int sizeTreshold)
 	{
-		if (vipsBlock.isVisualBlock())
-			list.add(vipsBlock);
+		synchronized (_sizeDecisions)
+		{
+			for (int size : _sizeDecisions.values())
+			{
+				if (size > sizeTreshold)
+					return true;
+			}
+		}
 
-		for (VipsBlock vipsStructureChild : vipsBlock.getChildren())
-			findVisualBlocks(vipsStructureChild, list);
+		return false;
+	}
+
+	/**
+	 * Sets block as not dividable visual block (used by rule seven).
+	 * @param vipsBlock Block
+	 */
+	private void markBlock(VipsBlock vipsBlock)
+	{
+		vipsBlock.setIsDividable(false);
+		vipsBlock.setIsVisualBlock(true);
+		// TODO DoC values
+		vipsBlock.setDoC(7);
+
+		if (_incrementalParsing)
+			_markedBlocks.add(vipsBlock);
+	}
+
+	/**
+	 * Creates block, that reads styles and source index from parser's
+	 * tables
+	 * @return Block
+	 */
+	private VipsBlock createVipsBlock()
+	{
+		VipsBlock vipsBlock = new VipsBlock();
+		vipsBlock.setStyleTable(_styleTable);
+		vipsBlock.setDocumentOrder(_documentOrder);
+
+		return vipsBlock;
 	}
 
 	public List<VipsBlock> getVisualBlocks()
 	{
-		List<VipsBlock> list = new ArrayList<VipsBlock>();
-		findVisualBlocks(_vipsBlocks, list);
+		List<VipsBlock> list = new ArrayList<VipsBlock>(_blockTable.getVisualBlocksCount());
+		_blockTable.getVisualBlocks(list);
 
 		return list;
 	}
 
+	/**
+	 * Returns flat table of blocks from last parse
+	 * @return Table of blocks
+	 */
+	public VipsBlockTable getBlockTable()
+	{
+		return _blockTable;
+	}
+
 	/**
 	 * Construct VIPS block tree from viewport.
 	 * <p>
-	 * Starts from &lt;body&gt; element.
-	 * @param element Box that represents element
-	 * @param node Visual structure tree node
+	 * Starts from &lt;body&gt; element (or from root set by setRoot()). Every
+	 * created block is indexed by its DOM node. When pruning is enabled or
+	 * region is set, subtrees that are hidden (or outside of region) with all
+	 * their descendants aren't added.
+	 * @param root Visual structure tree node with box, that represents element
+	 * @param replacedBlocks Blocks of subtree, that is being replaced (and
+	 * blocks indexed so far in the new subtree) or null, when whole tree is built
 	 */
-	private void constructVipsBlockTree(Box element, VipsBlock node)
+	private void constructVipsBlockTree(VipsBlock root, Set<VipsBlock> replacedBlocks)
 	{
-		node.setBox(element);
+		_blockStack.push(root);
 
-		if (! (element instanceof TextBox))
+		while (!_blockStack.isEmpty())
 		{
-			for (Box box: ((ElementBox) element).getSubBoxList())
+			VipsBlock node = _blockStack.pop();
+			Box element = node.getBox();
+
+			if (replacedBlocks == null)
+				_blocksByNode.put(element.getNode(), node);
+			else
 			{
-				node.addChild(new VipsBlock());
-				constructVipsBlockTree(box, node.getChildren().get(node.getChildren().size()-1));
+				// blocks after replaced subtree stay indexed
+				VipsBlock indexedBlock = _blocksByNode.get(element.getNode());
+				if (indexedBlock == null || replacedBlocks.contains(indexedBlock))
+				{
+					_blocksByNode.put(element.getNode(), node);
+					replacedBlocks.add(node);
+				}
+			}
+
+			if (! (element instanceof TextBox))
+			{
+				for (Box box: ((ElementBox) element).getSubBoxList())
+				{
+					if ((_pruning || _regionSet) && getAggregate(box).hidden)
+					{
+						// refined subtree prunes same boxes as the replaced one
+						if (replacedBlocks == null)
+						{
+							_prunedSubtrees++;
+							_prunedBoxes += getAggregate(box).boxes;
+						}
+						continue;
+					}
+
+					VipsBlock child = createVipsBlock();
+					child.setBox(box);
+					node.addChild(child);
+				}
+
+				List<VipsBlock> children = node.getChildren();
+				for (int i = children.size() - 1; i >= 0; i--)
+					_blockStack.push(children.get(i));
 			}
 		}
 	}
-
 	/**
 	 * Tries to divide DOM elements and finds visual blocks.
-	 * @param vipsBlock Visual structure
+	 * <p>
+	 * With parallel division big subtrees, whose division doesn't depend
+	 * on each other, are divided in separate tasks. Result is same as
+	 * with sequential division.
+	 * @param root Visual structure
+	 */
+	private void divideVipsBlockTree(VipsBlock root)
+	{
+		DivisionIndex index = (_forkJoinPool != null) ? createDivisionIndex(root) : null;
+		long[] ruleDecisions;
+
+		if (index != null)
+		{
+			DivisionTask task = new DivisionTask(root, false, index);
+			_forkJoinPool.invoke(task);
+			ruleDecisions = task._decisions;
+		}
+		else
+		{
+			ruleDecisions = new long[_ruleDecisions.length];
+			divideVipsBlocks(root, false, null, ruleDecisions);
+		}
+
+		for (int rule = 0; rule < ruleDecisions.length; rule++)
+			_ruleDecisions[rule] += ruleDecisions[rule];
+	}
+
+	/**
+	 * Divides blocks of subtree in order of tree.
+	 * @param root Root of subtree
+	 * @param rootDivided True if root was already divided, otherwise false
+	 * @param index Index for parallel division or null
+	 * @param ruleDecisions Counters of decisions (indexed by rule number)
+	 */
+	private void divideVipsBlocks(VipsBlock root, boolean rootDivided, DivisionIndex index, long[] ruleDecisions)
+	{
+		// unlike other traversals, stack can't be parser's field - division
+		// runs in several tasks at once and small subtrees are divided by
+		// nested call, while caller's stack is still in use
+		VipsTraversalStack<VipsBlock> stack = new VipsTraversalStack<VipsBlock>();
+		// value 0 - block will be divided, 1 - block was divided
+		stack.push(root, rootDivided ? 1 : 0);
+
+		while (!stack.isEmpty())
+		{
+			VipsBlock vipsBlock = stack.pop();
+
+			if (stack.getValue() == 0 && !divideVipsBlock(vipsBlock, ruleDecisions))
+				continue;
+
+			if (index != null && divideChildrenInParallel(vipsBlock, index, ruleDecisions))
+				continue;
+
+			// if element is dividable, let's divide it (children are pushed
+			// in reverse order, so they're divided in order of tree)
+			List<VipsBlock> children = vipsBlock.getChildren();
+			for (int i = children.size() - 1; i >= 0; i--)
+			{
+				if (!(children.get(i).getBox() instanceof TextBox))
+					stack.push(children.get(i), 0);
+			}
+		}
+	}
+
+	/**
+	 * Applies VIPS rules on block and decides, if it's divided or if it's
+	 * visual block.
+	 * @param vipsBlock Block
+	 * @param ruleDecisions Counters of decisions (indexed by rule number)
+	 * @return True if block is divided, otherwise false
 	 */
-	private void divideVipsBlockTree(VipsBlock vipsBlock)
+	private boolean divideVipsBlock(VipsBlock vipsBlock, long[] ruleDecisions)
 	{
-		_currentVipsBlock = vipsBlock;
 		ElementBox elementBox = (ElementBox) vipsBlock.getBox();
 		//System.err.println(elementBox.getNode().getNodeName());
 		//System.out.println(elementBox.getText());
 
-		if (elementBox.getElement().getAttribute("id").equals("logosLine"))
+		// With VIPS rules it tries to determine if element is dividable
+		if (applyVipsRules(elementBox, vipsBlock, ruleDecisions) && vipsBlock.isDividable() && !vipsBlock.isVisualBlock())
+		{
+			vipsBlock.setAlreadyDivided(true);
+			return true;
+		}
+
+		if (vipsBlock.isDividable())
 		{
-			System.out.println();
+			//System.err.println("Element " + elementBox.getNode().getNodeName() + " is visual block");
+			vipsBlock.setIsVisualBlock(true);
+			vipsBlock.setDoC(11);
 		}
 
-		// With VIPS rules it tries to determine if element is dividable
-		if (applyVipsRules(elementBox) && vipsBlock.isDividable() && !vipsBlock.isVisualBlock())
+		if (!verifyValidity(elementBox))
 		{
-			// if element is dividable, let's divide it
-			_currentVipsBlock.setAlreadyDivided(true);
-			for (VipsBlock vipsBlockChild : vipsBlock.getChildren())
-			{
-				if (!(vipsBlockChild.getBox() instanceof TextBox))
-					divideVipsBlockTree(vipsBlockChild);
-			}
+			vipsBlock.setIsVisualBlock(false);
 		}
+		/*
+		if (vipsBlock.isVisualBlock())
+			//System.err.println("Element " + elementBox.getNode().getNodeName() + " is visual block");
 		else
+			System.err.println("Element " + elementBox.getNode().getNodeName() + " is not visual block");*/
+
+		return false;
+	}
+
+	/**
+	 * Divides children of divided block and their subtrees. Children
+	 * themselves are divided in order of tree (rule ten depends on previous
+	 * sibling), big subtrees of divided children are then divided in parallel.
+	 * @param vipsBlock Divided block
+	 * @param index Index for parallel division
+	 * @param ruleDecisions Counters of decisions (indexed by rule number)
+	 * @return True if children were divided, false if block's subtree has
+	 * to be divided sequentially
+	 */
+	private boolean divideChildrenInParallel(VipsBlock vipsBlock, DivisionIndex index, long[] ruleDecisions)
+	{
+		if (!index.isDividableInParallel(vipsBlock, _parallelCutoff))
+			return false;
+
+		List<VipsBlock> dividedChildren = new ArrayList<VipsBlock>();
+
+		for (VipsBlock child : vipsBlock.getChildren())
 		{
-			if (vipsBlock.isDividable())
-			{
-				//System.err.println("Element " + elementBox.getNode().getNodeName() + " is visual block");
-				vipsBlock.setIsVisualBlock(true);
-				vipsBlock.setDoC(11);
-			}
+			if (!(child.getBox() instanceof TextBox) && divideVipsBlock(child, ruleDecisions))
+				dividedChildren.add(child);
+		}
+
+		List<DivisionTask> tasks = new ArrayList<DivisionTask>();
 
-			if (!verifyValidity(elementBox))
+		for (VipsBlock child : dividedChildren)
+		{
+			if (index.getSize(child) >= _parallelCutoff)
 			{
-				_currentVipsBlock.setIsVisualBlock(false);
+				DivisionTask task = new DivisionTask(child, true, index);
+				task.fork();
+				tasks.add(task);
 			}
-			/*
-			if (vipsBlock.isVisualBlock())
-				//System.err.println("Element " + elementBox.getNode().getNodeName() + " is visual block");
-			else
-				System.err.println("Element " + elementBox.getNode().getNodeName() + " is not visual block");*/
 		}
+
+		// small subtrees are divided by this thread
+		for (VipsBlock child : dividedChildren)
+		{
+			if (index.getSize(child) < _parallelCutoff)
+				divideVipsBlocks(child, true, index, ruleDecisions);
+		}
+
+		for (int i = tasks.size() - 1; i >= 0; i--)
+		{
+			DivisionTask task = tasks.get(i);
+			task.join();
+
+			for (int rule = 0; rule < ruleDecisions.length; rule++)
+				ruleDecisions[rule] += task._decisions[rule];
+		}
+
+		return true;
 	}
 
-	private int getAllTextLength(ElementBox node)
+	/**
+	 * Loads subtree to block table and finds blocks, whose division depends
+	 * on other block (by rule ten).
+	 * @param root Root of subtree
+	 * @return Index or null, when subtree is too small for parallel division
+	 */
+	private DivisionIndex createDivisionIndex(VipsBlock root)
 	{
-		List<Box> childrenTextNodes = new ArrayList<Box>();
+		_blockTable.load(root);
 
-		findTextChildrenNodes(node, childrenTextNodes);
+		if (_blockTable.size() < 2 * _parallelCutoff)
+			return null;
 
-		int textLength = 0;
+		DivisionIndex index = new DivisionIndex(_blockTable);
+		List<Long> dependencies = new ArrayList<Long>();
 
-		for (Box child : childrenTextNodes)
+		for (int position = 0; position < _blockTable.size(); position++)
 		{
-			String childText = child.getText();
+			Box box = _blockTable.getBox(position);
+
+			// only rules of block p and td nodes contain rule ten
+			if (!_enabledRules[10] || box instanceof TextBox || !box.isBlock() ||
+					(getTag(box) != TAG_P && getTag(box) != TAG_TD))
+				continue;
+
+			Node previousSibling = box.getNode().getPreviousSibling();
+			VipsBlock previousSiblingVipsBlock = (previousSibling != null) ? _blocksByNode.get(previousSibling) : null;
 
-			if (!childText.equals("") && !childText.equals(" ") && !childText.equals("\n"))
-				textLength += childText.length();
+			// text blocks are never divided
+			if (previousSiblingVipsBlock == null || previousSiblingVipsBlock.getBox() instanceof TextBox)
+				continue;
+
+			int previousPosition = _blockTable.indexOf(previousSiblingVipsBlock);
+			if (previousPosition == VipsBlockTable.NONE)
+				continue;
+
+			dependencies.add(((long) Math.min(position, previousPosition) << 32) | Math.max(position, previousPosition));
 		}
 
-		return textLength;
+		index.dependencies = new long[dependencies.size()];
+		for (int i = 0; i < index.dependencies.length; i++)
+			index.dependencies[i] = dependencies.get(i);
+		Arrays.sort(index.dependencies);
+
+		return index;
 	}
 
-	private void getAllChildren(Box node, List<Box> children)
+	/**
+	 * Computes aggregated values for box and all its descendants in one
+	 * post-order traversal.
+	 * @param root Box
+	 * @return Aggregated values of box's subtree
+	 */
+	private SubtreeAggregate computeAggregates(Box root)
 	{
-		children.add(node);
+		// value 0 - box is entered, 1 - box's children were computed
+		_boxStack.push(root, 0);
 
-		if (node instanceof TextBox)
-			return;
-
-		for (Box child : ((ElementBox) node).getSubBoxList())
+		while (!_boxStack.isEmpty())
 		{
-			getAllChildren(child, children);
+			Box box = _boxStack.pop();
+
+			if (_boxStack.getValue() == 0 && !(box instanceof TextBox))
+			{
+				_boxStack.push(box, 1);
+				for (Box child : ((ElementBox) box).getSubBoxList())
+					_boxStack.push(child, 0);
+				continue;
+			}
+
+			SubtreeAggregate aggregate = new SubtreeAggregate();
+			Integer tag = TAG_IDS.get(box.getNode().getNodeName());
+
+			if (tag != null)
+				aggregate.tag = tag;
+			if (box.isVisible() && (aggregate.tag == TAG_IMG || aggregate.tag == TAG_INPUT))
+				aggregate.visibleImgOrInput = true;
+			if (aggregate.tag == TAG_HR)
+				aggregate.hr = true;
+			if (box.getWidth() != 0 && box.getHeight() != 0)
+				aggregate.sizedBox = true;
+			if (isVisibleInRegion(box))
+				aggregate.hidden = false;
+
+			if (box instanceof TextBox)
+			{
+				String text = box.getText();
+
+				if (!text.equals("") && !text.equals(" ") && !text.equals("\n"))
+					aggregate.textLength = text.length();
+				if (!text.equals(" "))
+					aggregate.validNodes = 1;
+				aggregate.textBoxes = 1;
+			}
+			else
+			{
+				if (isValidNode((ElementBox) box))
+					aggregate.validNodes = 1;
+
+				for (Box child : ((ElementBox) box).getSubBoxList())
+				{
+					SubtreeAggregate childAggregate = _aggregates.get(child);
+					aggregate.textLength += childAggregate.textLength;
+					aggregate.textBoxes += childAggregate.textBoxes;
+					aggregate.validNodes += childAggregate.validNodes;
+					aggregate.visibleImgOrInput |= childAggregate.visibleImgOrInput;
+					aggregate.hr |= childAggregate.hr;
+					aggregate.sizedBox |= childAggregate.sizedBox;
+					aggregate.hidden &= childAggregate.hidden;
+					aggregate.boxes += childAggregate.boxes;
+				}
+			}
+
+			_aggregates.put(box, aggregate);
 		}
+
+		return _aggregates.get(root);
+	}
+	/**
+	 * Returns aggregated values of box's subtree
+	 * @param box Box
+	 * @return Aggregated values
+	 */
+	private SubtreeAggregate getAggregate(Box box)
+	{
+		SubtreeAggregate aggregate = _aggregates.get(box);
+
+		if (aggregate == null)
+			aggregate = computeAggregates(box);
+
+		return aggregate;
 	}
 
 	private boolean verifyValidity(ElementBox node)
 	{
+		if (!isVisibleInRegion(node))
+			return false;
 
-		if (node.getAbsoluteContentX() < 0 || node.getAbsoluteContentY() < 0)
+		if (!_subtreeValidation)
+			return true;
+
+		SubtreeAggregate aggregate = getAggregate(node);
+
+		if (aggregate.textLength == 0)
+			return aggregate.visibleImgOrInput;
+
+		return true;
+	}
+
+	/**
+	 * Checks, if box is displayed, visible, has non zero size and lies
+	 * inside of segmented region (whole page by default).
+	 * @param node
+	 *            Input box
+	 *
+	 * @return True, if box is visible in region, otherwise false.
+	 */
+	private boolean isVisibleInRegion(Box node)
+	{
+		if (node.getAbsoluteContentX() < _regionX || node.getAbsoluteContentY() < _regionY)
 			return false;
 
-		if (node.getAbsoluteContentX() + node.getContentWidth() > _pageWidth)
+		if (node.getAbsoluteContentX() + node.getContentWidth() > _regionX + _regionWidth)
 		{
 			return false;
 			//System.out.println("X " + node.getAbsoluteContentX() + "\t" + (node.getAbsoluteContentX() + node.getContentWidth()) + "\t" + _pageWidth);
 		}
 
-		if (node.getAbsoluteContentY() + node.getContentHeight() > _pageHeight)
+		if (node.getAbsoluteContentY() + node.getContentHeight() > _regionY + _regionHeight)
 		{
 			return false;
 			//System.out.println("Y " + node.getAbsoluteContentY() + "\t" + (node.getAbsoluteContentY() + node.getContentHeight()) + "\t" + _pageHeight);
@@ -240,28 +962,6 @@ public class VipsParser {
 		if (!node.isVisible())
 			return false;
 
-		if (getAllTextLength(node) == 0)
-		{
-			List<Box> children = new ArrayList<Box>();
-
-			getAllChildren(node, children);
-
-			for (Box child : children)
-			{
-				String childNodeName = child.getNode().getNodeName();
-
-				if (!child.isVisible())
-					continue;
-
-				if (childNodeName.equals("img"))
-					return true;
-				if (childNodeName.equals("input"))
-					return true;
-			}
-
-			return false;
-		}
-
 		return true;
 	}
 
@@ -294,7 +994,7 @@ public class VipsParser {
 	 */
 	private boolean isTextNode(ElementBox box)
 	{
-		return (box.getNode().getNodeName().equals("text")) ? true : false;
+		return (getTag(box) == TAG_TEXT) ? true : false;
 	}
 
 	/**
@@ -334,365 +1034,273 @@ public class VipsParser {
 	 * @return True, if node is virtual text node, otherwise false.
 	 */
 	private boolean isVirtualTextNode2(ElementBox node)
-	{
-		if (node.isBlock())
-			return false;
-
-		for (Box childNode : node.getSubBoxList())
-			if (!isTextNode((ElementBox) childNode) ||
-					!isVirtualTextNode1((ElementBox) childNode))
-				return false;
-
-		return true;
-	}
-
-	/**
-	 * Checks, if node is virtual text node.
-	 * 
-	 * @param node
-	 *            Input node
-	 * 
-	 * @return True, if node is virtual text node, otherwise false.
-	 */
-	private boolean isVirtualTextNode(ElementBox node)
-	{
-		if (isVirtualTextNode1(node))
-			return true;
-		if (isVirtualTextNode2(node))
-			return true;
-
-		return false;
-	}
-
-	int _cnt = 0;
-
-	private void checkValidChildrenNodes(Box node)
-	{
-		if (node instanceof TextBox)
-		{
-			if (!node.getText().equals(" "))
-			{
-				_cnt++;
-			}
-			return;
-		}
-		else
-		{
-			if (isValidNode((ElementBox) node))
-				_cnt++;
-		}
-
-		for (Box childNode : ((ElementBox) node).getSubBoxList())
-		{
-			checkValidChildrenNodes(childNode);
-		}
-	}
-
-	/*
-	 * Checks if node has valid children nodes
-	 */
-	private boolean hasValidChildrenNodes(ElementBox node)
-	{
-		if (node.getNode().getNodeName().equals("img") || node.getNode().getNodeName().equals("input") )
-		{
-			if (node.getContentWidth() > 0 && node.getContentHeight() > 0)
-			{
-				_currentVipsBlock.setIsVisualBlock(true);
-				_currentVipsBlock.setDoC(8);
-				return true;
-			}
-			else
-				return false;
-		}
-
-		if (node.getSubBoxList().isEmpty())
-			return false;
-
-		_cnt = 0;
-
-		for (Box child : node.getSubBoxList())
-		{
-			checkValidChildrenNodes(child);
-		}
-
-		return (_cnt > 0) ? true : false;
-	}
-
-	/*
-	 * Returns the number of node's valid children
-	 */
-	private int numberOfValidChildNodes(ElementBox node)
-	{
-		_cnt = 0;
-
-		if (node.getSubBoxList().isEmpty())
-			return _cnt;
-
-		for (Box child : node.getSubBoxList())
-		{
-			checkValidChildrenNodes(child);
-		}
-
-		return _cnt;
-	}
-
-	/**
-	 * On different DOM nodes it applies different sets of VIPS rules.
-	 * @param node DOM node
-	 * @return Returns true if element is dividable, otherwise false.
-	 */
-	private boolean applyVipsRules(ElementBox node)
-	{
-		boolean retVal = false;
-
-		//System.err.println("Applying VIPS rules on " + node.getNode().getNodeName() + " node");
-
-		if (!node.isBlock())
-		{
-			retVal = applyInlineTextNodeVipsRules(node);
-		}
-		else if (node.getNode().getNodeName().equals("table"))
-		{
-			retVal = applyTableNodeVipsRules(node);
-		}
-		else if (node.getNode().getNodeName().equals("tr"))
-		{
-			retVal = applyTrNodeVipsRules(node);
-		}
-		else if (node.getNode().getNodeName().equals("td"))
-		{
-			retVal = applyTdNodeVipsRules(node);
-		}
-		else if (node.getNode().getNodeName().equals("p"))
-		{
-			retVal = applyPNodeVipsRules(node);
-		}
-		else
-		{
-			retVal = applyOtherNodeVipsRules(node);
-		}
-
-		return retVal;
-	}
-
-	/**
-	 * Applies VIPS rules on block nodes other than &lt;P&gt; &lt;TD&gt;
-	 * &lt;TR&gt; &lt;TABLE&gt;.
-	 * @param node Node
-	 * @return Returns true if one of rules success and node is dividable.
-	 */
-	private boolean applyOtherNodeVipsRules(ElementBox node)
-	{
-		// 1 2 3 4 6 8 9 11
-
-		if (ruleOne(node))
-			return true;
-
-		if (ruleTwo(node))
-			return true;
-
-		if (ruleThree(node))
-			return true;
-
-		if (ruleFour(node))
-			return true;
-
-		if (ruleSix(node))
-			return true;
-
-		if (ruleEight(node))
-			return true;
-
-		if (ruleNine(node))
-			return true;
-
-		if (ruleEleven(node))
-			return true;
-
-		return false;
-	}
-
-	/**
-	 * Applies VIPS rules on &lt;P&gt; node.
-	 * @param node Node
-	 * @return Returns true if one of rules success and node is dividable.
-	 */
-	private boolean applyPNodeVipsRules(ElementBox node)
-	{
-		// 1 2 3 4 5 6 8 9 11
-
-		if (ruleOne(node))
-			return true;
-
-		if (ruleTwo(node))
-			return true;
-
-		if (ruleThree(node))
-			return true;
-
-		if (ruleFour(node))
-			return true;
-
-		if (ruleFive(node))
-			return true;
-
-		if (ruleSix(node))
-			return true;
-
-		if (ruleSeven(node))
-			return true;
-
-		if (ruleEight(node))
-			return true;
+	{
+		if (node.isBlock())
+			return false;
 
-		if (ruleNine(node))
-			return true;
+		for (Box childNode : node.getSubBoxList())
+			if (!isTextNode((ElementBox) childNode) ||
+					!isVirtualTextNode1((ElementBox) childNode))
+				return false;
 
-		if (ruleTen(node))
-			return true;
+		return true;
+	}
 
-		if (ruleEleven(node))
+	/**
+	 * Checks, if node is virtual text node.
+	 * 
+	 * @param node
+	 *            Input node
+	 * 
+	 * @return True, if node is virtual text node, otherwise false.
+	 */
+	private boolean isVirtualTextNode(ElementBox node)
+	{
+		if (isVirtualTextNode1(node))
 			return true;
-
-		if (ruleTwelve(node))
+		if (isVirtualTextNode2(node))
 			return true;
 
 		return false;
 	}
 
-	/**
-	 * Applies VIPS rules on &lt;TD&gt; node.
-	 * @param node Node
-	 * @return Returns true if one of rules success and node is dividable.
+	/*
+	 * Checks if node has valid children nodes
 	 */
-	private boolean applyTdNodeVipsRules(ElementBox node)
+	private boolean hasValidChildrenNodes(ElementBox node, VipsBlock vipsBlock)
 	{
-		// 1 2 3 4 8 9 10 12
+		int tag = getTag(node);
 
-		if (ruleOne(node))
-			return true;
-
-		if (ruleTwo(node))
-			return true;
+		if (tag == TAG_IMG || tag == TAG_INPUT)
+		{
+			if (node.getContentWidth() > 0 && node.getContentHeight() > 0)
+			{
+				vipsBlock.setIsVisualBlock(true);
+				vipsBlock.setDoC(8);
+				return true;
+			}
+			else
+				return false;
+		}
 
-		if (ruleThree(node))
-			return true;
+		if (node.getSubBoxList().isEmpty())
+			return false;
 
-		if (ruleFour(node))
-			return true;
+		return (numberOfValidChildNodes(node) > 0) ? true : false;
+	}
 
-		if (ruleEight(node))
-			return true;
+	/*
+	 * Returns the number of node's valid children
+	 */
+	private int numberOfValidChildNodes(ElementBox node)
+	{
+		int cnt = 0;
 
-		if (ruleNine(node))
-			return true;
+		for (Box child : node.getSubBoxList())
+			cnt += getAggregate(child).validNodes;
 
-		if (ruleTen(node))
-			return true;
+		return cnt;
+	}
 
-		if (ruleTwelve(node))
-			return true;
+	/**
+	 * Enables or disables VIPS rule. All rules are enabled by default.
+	 * @param rule Number of rule (1-12)
+	 * @param enable True for enable, otherwise false.
+	 */
+	public void enableRule(int rule, boolean enable)
+	{
+		if (rule < 1 || rule > 12)
+		{
+			System.err.println("VIPS rule must be between 1 and 12! Not " + rule + "!");
+			return;
+		}
 
-		return false;
+		_enabledRules[rule] = enable;
 	}
 
 	/**
-	 * Applies VIPS rules on &TR;&gt; node.
-	 * @param node Node
-	 * @return Returns true if one of rules success and node is dividable.
+	 * Sets profile of VIPS rules. Rules enabled by profile can be later
+	 * disabled with {@link #enableRule(int, boolean)}.
+	 * @param profile Profile
 	 */
-	private boolean applyTrNodeVipsRules(ElementBox node)
+	public void setProfile(VipsProfile profile)
 	{
-		// 1 2 3 7 9 12
-
-		if (ruleOne(node))
-			return true;
+		for (int rule = 1; rule <= 12; rule++)
+			_enabledRules[rule] = profile.isRuleEnabled(rule);
 
-		if (ruleTwo(node))
-			return true;
+		_subtreeValidation = profile.isSubtreeValidationEnabled();
+		_pruning = profile.isPruningEnabled();
+	}
 
-		if (ruleThree(node))
-			return true;
+	/**
+	 * Enables or disables pruning of hidden subtrees (subtrees without any
+	 * box visible on page are left out of block tree). Profile sets default
+	 * value, so this has to be called after
+	 * {@link #setProfile(VipsProfile)}.
+	 * @param enable True for enable, otherwise false.
+	 */
+	public void enablePruning(boolean enable)
+	{
+		this._pruning = enable;
+	}
 
-		if (ruleSeven(node))
-			return true;
+	/**
+	 * Restricts segmentation to subtree of element box.
+	 * @param root Root of segmented subtree or null for &lt;body&gt;
+	 */
+	public void setRoot(ElementBox root)
+	{
+		this._root = root;
+		this._lastSizeTreshold = -1;
+	}
 
-		if (ruleNine(node))
-			return true;
+	/**
+	 * Restricts segmentation to region of page. Only blocks inside of
+	 * region can be visual blocks and subtrees outside of region aren't
+	 * added to block tree.
+	 * @param x Region's X coordinate
+	 * @param y Region's Y coordinate
+	 * @param width Region's width
+	 * @param height Region's height
+	 */
+	public void setRegion(int x, int y, int width, int height)
+	{
+		this._regionX = x;
+		this._regionY = y;
+		this._regionWidth = width;
+		this._regionHeight = height;
+		this._regionSet = true;
+		this._lastSizeTreshold = -1;
+		// hidden subtrees depend on region
+		_aggregates.clear();
+	}
 
-		if (ruleTwelve(node))
-			return true;
+	/**
+	 * Enables parallel division of blocks. Big subtrees, whose division
+	 * doesn't depend on each other, are divided in separate tasks. Result
+	 * is same as with sequential division.
+	 * @param forkJoinPool Pool, that runs tasks, or null for sequential division
+	 */
+	public void setForkJoinPool(ForkJoinPool forkJoinPool)
+	{
+		this._forkJoinPool = forkJoinPool;
+	}
 
-		return false;
+	/**
+	 * Sets minimal number of boxes in subtree, that is divided in separate
+	 * task during parallel division.
+	 * @param cutoff Number of boxes in subtree
+	 */
+	public void setParallelCutoff(int cutoff)
+	{
+		this._parallelCutoff = Math.max(cutoff, 2);
 	}
 
 	/**
-	 * Applies VIPS rules on &lt;TABLE&gt; node.
-	 * @param node Node
-	 * @return Returns true if one of rules success and node is dividable.
+	 * Returns number of nodes decided by rule in all parses so far
+	 * @param rule Number of rule (1-12) or 0 for nodes, where no rule succeeded
+	 * @return Number of nodes
 	 */
-	private boolean applyTableNodeVipsRules(ElementBox node)
+	public long getRuleDecisions(int rule)
 	{
-		// 1 2 3 7 9 12
+		return _ruleDecisions[rule];
+	}
 
-		if (ruleOne(node))
-			return true;
+	/**
+	 * Returns number of hidden subtrees left out of current block tree
+	 * (rounds, that build the tree again, don't add to it)
+	 * @return Number of subtrees
+	 */
+	public long getPrunedSubtrees()
+	{
+		return _prunedSubtrees;
+	}
 
-		if (ruleTwo(node))
-			return true;
+	/**
+	 * Returns number of boxes in hidden subtrees left out of current block
+	 * tree
+	 * @return Number of boxes
+	 */
+	public long getPrunedBoxes()
+	{
+		return _prunedBoxes;
+	}
 
-		if (ruleThree(node))
-			return true;
+	/**
+	 * On different DOM nodes it applies different sets of VIPS rules.
+	 * @param node DOM node
+	 * @param vipsBlock Block of node
+	 * @param ruleDecisions Counters of decisions (indexed by rule number)
+	 * @return Returns true if element is dividable, otherwise false.
+	 */
+	private boolean applyVipsRules(ElementBox node, VipsBlock vipsBlock, long[] ruleDecisions)
+	{
+		//System.err.println("Applying VIPS rules on " + node.getNode().getNodeName() + " node");
 
-		if (ruleSeven(node))
-			return true;
+		int[] rules;
 
-		if (ruleNine(node))
-			return true;
+		if (!node.isBlock())
+			rules = INLINE_NODE_RULES;
+		else
+		{
+			switch (getTag(node))
+			{
+				case TAG_TABLE:
+					rules = TABLE_NODE_RULES;
+					break;
+				case TAG_TR:
+					rules = TR_NODE_RULES;
+					break;
+				case TAG_TD:
+					rules = TD_NODE_RULES;
+					break;
+				case TAG_P:
+					rules = P_NODE_RULES;
+					break;
+				default:
+					rules = OTHER_NODE_RULES;
+			}
+		}
 
-		if (ruleTwelve(node))
-			return true;
+		// first rule, that succeeds, decides
+		for (int rule : rules)
+		{
+			if (_enabledRules[rule] && applyRule(rule, node, vipsBlock))
+			{
+				ruleDecisions[rule]++;
+				return true;
+			}
+		}
 
+		ruleDecisions[0]++;
 		return false;
 	}
 
 	/**
-	 * Applies VIPS rules on inline nodes.
+	 * Applies one VIPS rule on node.
+	 * @param rule Number of rule
 	 * @param node Node
-	 * @return Returns true if one of rules success and node is dividable.
+	 * @param vipsBlock Block of node
+	 * @return True, if rule is applied, otherwise false.
 	 */
-	private boolean applyInlineTextNodeVipsRules(ElementBox node)
+	private boolean applyRule(int rule, ElementBox node, VipsBlock vipsBlock)
 	{
-		// 1 2 3 4 5 6 8 9 11
-
-		if (ruleOne(node))
-			return true;
-
-		if (ruleTwo(node))
-			return true;
-
-		if (ruleThree(node))
-			return true;
-
-		if (ruleFour(node))
-			return true;
-
-		if (ruleFive(node))
-			return true;
-
-		if (ruleSix(node))
-			return true;
-
-		if (ruleEight(node))
-			return true;
-
-		if (ruleNine(node))
-			return true;
-
-		if (ruleTwelve(node))
-			return true;
-
-		return false;
+		switch (rule)
+		{
+			case 1: return ruleOne(node, vipsBlock);
+			case 2: return ruleTwo(node, vipsBlock);
+			case 3: return ruleThree(node, vipsBlock);
+			case 4: return ruleFour(node, vipsBlock);
+			case 5: return ruleFive(node, vipsBlock);
+			case 6: return ruleSix(node, vipsBlock);
+			case 7: return ruleSeven(node, vipsBlock);
+			case 8: return ruleEight(node, vipsBlock);
+			case 9: return ruleNine(node, vipsBlock);
+			case 10: return ruleTen(node, vipsBlock);
+			case 11: return ruleEleven(node, vipsBlock);
+			case 12: return ruleTwelve(node, vipsBlock);
+			default: return false;
+		}
 	}
 
 	/**
@@ -703,18 +1311,20 @@ public class VipsParser {
 	 * 
 	 * @param node
 	 *            Input node
+	 * @param vipsBlock
+	 *            Block of node
 	 * 
 	 * @return True, if rule is applied, otherwise false.
 	 */
-	private boolean ruleOne(ElementBox node)
+	private boolean ruleOne(ElementBox node, VipsBlock vipsBlock)
 	{
 		//System.err.println("Applying rule One on " + node.getNode().getNodeName() + " node");
 
 		if (!isTextNode(node))
 		{
-			if (!hasValidChildrenNodes(node))
+			if (!hasValidChildrenNodes(node, vipsBlock))
 			{
-				_currentVipsBlock.setIsDividable(false);
+				vipsBlock.setIsDividable(false);
 				return true;
 			}
 		}
@@ -730,10 +1340,12 @@ public class VipsParser {
 	 * 
 	 * @param node
 	 *            Input node
+	 * @param vipsBlock
+	 *            Block of node
 	 * 
 	 * @return True, if rule is applied, otherwise false.
 	 */
-	private boolean ruleTwo(ElementBox node)
+	private boolean ruleTwo(ElementBox node, VipsBlock vipsBlock)
 	{
 		//System.err.println("Applying rule Two on " + node.getNode().getNodeName() + " node");
 
@@ -757,27 +1369,34 @@ public class VipsParser {
 	 * 
 	 * @param node
 	 *            Input node
+	 * @param vipsBlock
+	 *            Block of node
 	 * 
 	 * @return True, if rule is applied, otherwise false.
 	 */
-	private boolean ruleThree(ElementBox node)
+	private boolean ruleThree(ElementBox node, VipsBlock vipsBlock)
 	{
 		//System.err.println("Applying rule Three on " + node.getNode().getNodeName() + " node");
 
 		if (!node.isRootElement())
 			return false;
 
-		boolean result = true;
 		int cnt = 0;
 
-		for (VipsBlock vipsBlock : _vipsBlocks.getChildren())
+		// hashes and stacks are shared by all blocks divided in parallel
+		synchronized (this)
 		{
-			if (vipsBlock.getBox().getNode().getNodeName().equals(node.getNode().getNodeName()))
-			{
-				result = true;
-				isOnlyOneDomSubTree(node.getNode(), vipsBlock.getBox().getNode(), result);
+			if (_topLevelBlocksByHash == null)
+				indexTopLevelBlocks();
 
-				if (result)
+			List<VipsBlock> candidates = _topLevelBlocksByHash.get(getSubtreeHash(node.getNode()));
+
+			if (candidates == null)
+				return false;
+
+			for (VipsBlock candidate : candidates)
+			{
+				if (isSameDomSubTree(node.getNode(), candidate.getBox().getNode()))
 					cnt++;
 			}
 		}
@@ -786,28 +1405,116 @@ public class VipsParser {
 	}
 
 	/**
-	 * Checks if node's subtree is unique in DOM tree.
-	 * @param pattern Node for comparing
-	 * @param node Node from DOM tree
-	 * @param result True if element is unique otherwise false
+	 * Groups top level blocks by structural hash of their DOM subtree.
 	 */
-	private void isOnlyOneDomSubTree(Node pattern, Node node, boolean result)
+	private void indexTopLevelBlocks()
 	{
-		if (!pattern.getNodeName().equals(node.getNodeName()))
-			result = false;
+		_topLevelBlocksByHash = new HashMap<Integer, List<VipsBlock>>();
+
+		for (VipsBlock vipsBlock : _vipsBlocks.getChildren())
+		{
+			Integer hash = getSubtreeHash(vipsBlock.getBox().getNode());
+			List<VipsBlock> blocks = _topLevelBlocksByHash.get(hash);
 
-		if (pattern.getChildNodes().getLength() != node.getChildNodes().getLength())
-			result = false;
+			if (blocks == null)
+			{
+				blocks = new ArrayList<VipsBlock>();
+				_topLevelBlocksByHash.put(hash, blocks);
+			}
 
-		if (!result)
-			return;
+			blocks.add(vipsBlock);
+		}
+	}
+
+	/**
+	 * Returns structural hash (node names and numbers of children) of node's
+	 * subtree. Hashes of whole document are computed on first call.
+	 * @param node Node
+	 * @return Hash of subtree
+	 */
+	private Integer getSubtreeHash(Node node)
+	{
+		if (_subtreeHashes == null)
+		{
+			_subtreeHashes = new IdentityHashMap<Node, Integer>();
+			computeSubtreeHash(node.getOwnerDocument() != null ? node.getOwnerDocument() : node);
+		}
+
+		Integer hash = _subtreeHashes.get(node);
+
+		if (hash == null)
+			hash = computeSubtreeHash(node);
+
+		return hash;
+	}
+
+	/**
+	 * Computes structural hashes of node's subtree bottom-up.
+	 * @param root Node
+	 * @return Hash of node's subtree
+	 */
+	private int computeSubtreeHash(Node root)
+	{
+		// value 0 - node is entered, 1 - hashes of node's children were computed
+		_nodeStack.push(root, 0);
 
-		for (int i = 0; i < pattern.getChildNodes().getLength(); i++)
+		while (!_nodeStack.isEmpty())
 		{
-			isOnlyOneDomSubTree(pattern.getChildNodes().item(i), node.getChildNodes().item(i), result);
+			Node node = _nodeStack.pop();
+			int childrenCount = node.getChildNodes().getLength();
+
+			if (_nodeStack.getValue() == 0 && childrenCount > 0)
+			{
+				_nodeStack.push(node, 1);
+				for (int i = 0; i < childrenCount; i++)
+					_nodeStack.push(node.getChildNodes().item(i), 0);
+				continue;
+			}
+
+			int hash = node.getNodeName().hashCode() * 31 + childrenCount;
+
+			for (int i = 0; i < childrenCount; i++)
+				hash = hash * 31 + _subtreeHashes.get(node.getChildNodes().item(i));
+
+			_subtreeHashes.put(node, hash);
 		}
+
+		return _subtreeHashes.get(root);
 	}
+	/**
+	 * Checks if two DOM subtrees have same structure (node names and
+	 * numbers of children).
+	 * @param pattern Node for comparing
+	 * @param node Node from DOM tree
+	 * @return True if subtrees have same structure, otherwise false
+	 */
+	private boolean isSameDomSubTree(Node pattern, Node node)
+	{
+		_patternStack.clear();
+		_nodeStack.clear();
+		_patternStack.push(pattern);
+		_nodeStack.push(node);
+
+		while (!_patternStack.isEmpty())
+		{
+			pattern = _patternStack.pop();
+			node = _nodeStack.pop();
+
+			if (!pattern.getNodeName().equals(node.getNodeName()))
+				return false;
+
+			if (pattern.getChildNodes().getLength() != node.getChildNodes().getLength())
+				return false;
+
+			for (int i = 0; i < pattern.getChildNodes().getLength(); i++)
+			{
+				_patternStack.push(pattern.getChildNodes().item(i));
+				_nodeStack.push(node.getChildNodes().item(i));
+			}
+		}
 
+		return true;
+	}
 	/**
 	 * VIPS Rule Four
 	 * <p>
@@ -819,10 +1526,12 @@ public class VipsParser {
 	 * 
 	 * @param node
 	 *            Input node
+	 * @param vipsBlock
+	 *            Block of node
 	 * 
 	 * @return True, if rule is applied, otherwise false.
 	 */
-	private boolean ruleFour(ElementBox node)
+	private boolean ruleFour(ElementBox node, VipsBlock vipsBlock)
 	{
 		//System.err.println("Applying rule Four on " + node.getNode().getNodeName() + " node");
 
@@ -838,25 +1547,25 @@ public class VipsParser {
 				return false;
 		}
 
-		_currentVipsBlock.setIsVisualBlock(true);
-		_currentVipsBlock.setIsDividable(false);
+		vipsBlock.setIsVisualBlock(true);
+		vipsBlock.setIsDividable(false);
 
 		if (node.getSubBoxList().size() == 1)
 		{
 			/*
 			if (node.getSubBox(0) instanceof TextBox)
 			{
-				_currentVipsBlock.setIsVisualBlock(false);
-				_currentVipsBlock.setIsDividable(true);
-				_currentVipsBlock.getChildren().get(0).setIsVisualBlock(true);
-				_currentVipsBlock.getChildren().get(0).setIsDividable(false);
-				_currentVipsBlock.getChildren().get(0).setDoC(11);
+				vipsBlock.setIsVisualBlock(false);
+				vipsBlock.setIsDividable(true);
+				vipsBlock.getChildren().get(0).setIsVisualBlock(true);
+				vipsBlock.getChildren().get(0).setIsDividable(false);
+				vipsBlock.getChildren().get(0).setDoC(11);
 			}
 			 */
-			if (node.getSubBox(0).getNode().getNodeName().equals("em"))
-				_currentVipsBlock.setDoC(11);
+			if (getTag(node.getSubBox(0)) == TAG_EM)
+				vipsBlock.setDoC(11);
 			else
-				_currentVipsBlock.setDoC(10);
+				vipsBlock.setDoC(10);
 			return true;
 		}
 
@@ -865,7 +1574,8 @@ public class VipsParser {
 
 		for (Box childNode : node.getSubBoxList())
 		{
-			int childFontSize = childNode.getVisualContext().getFont().getSize();
+			VipsStyleTable.Style childStyle = _styleTable.getStyle(childNode);
+			int childFontSize = childStyle.getFontSize();
 
 			if (childNode instanceof TextBox)
 			{
@@ -873,38 +1583,36 @@ public class VipsParser {
 				{
 					if (fontSize != childFontSize)
 					{
-						_currentVipsBlock.setDoC(9);
+						vipsBlock.setDoC(9);
 						break;
 					}
 					else
-						_currentVipsBlock.setDoC(10);
+						vipsBlock.setDoC(10);
 				}
 				else
 					fontSize = childFontSize;
 				continue;
 			}
 
-			ElementBox child = (ElementBox) childNode;
-
-			if (child.getStylePropertyValue("font-weight") == null)
+			if (childStyle.getFontWeight() == null)
 				return false;
 
 			if (fontSize > 0)
 			{
-				if (child.getStylePropertyValue("font-weight").toString().equals(fontWeight) &&
+				if (childStyle.getFontWeight().equals(fontWeight) &&
 						childFontSize == fontSize)
 				{
-					_currentVipsBlock.setDoC(10);
+					vipsBlock.setDoC(10);
 				}
 				else
 				{
-					_currentVipsBlock.setDoC(9);
+					vipsBlock.setDoC(9);
 					break;
 				}
 			}
 			else
 			{
-				fontWeight = child.getStylePropertyValue("font-weight").toString();
+				fontWeight = childStyle.getFontWeight();
 				fontSize = childFontSize;
 			}
 		}
@@ -920,10 +1628,12 @@ public class VipsParser {
 	 * 
 	 * @param node
 	 *            Input node
+	 * @param vipsBlock
+	 *            Block of node
 	 * 
 	 * @return True, if rule is applied, otherwise false.
 	 */
-	private boolean ruleFive(ElementBox node)
+	private boolean ruleFive(ElementBox node, VipsBlock vipsBlock)
 	{
 		//System.err.println("Applying rule Five on " + node.getNode().getNodeName() + " node");
 
@@ -945,25 +1655,18 @@ public class VipsParser {
 	 * 
 	 * @param node
 	 *            Input node
+	 * @param vipsBlock
+	 *            Block of node
 	 * 
 	 * @return True, if rule is applied, otherwise false.
 	 */
-	private boolean ruleSix(ElementBox node)
+	private boolean ruleSix(ElementBox node, VipsBlock vipsBlock)
 	{
 		//System.err.println("Applying rule Six on " + node.getNode().getNodeName() + " node");
 		if (node.getSubBoxList().isEmpty())
 			return false;
 
-		List<Box> children = new ArrayList<Box>();
-		getAllChildren(node, children);
-
-		for (Box child : children)
-		{
-			if (child.getNode().getNodeName().equals("hr"))
-				return true;
-		}
-
-		return false;
+		return getAggregate(node).hr;
 	}
 
 	/**
@@ -977,10 +1680,12 @@ public class VipsParser {
 	 * 
 	 * @param node
 	 *            Input node
+	 * @param vipsBlock
+	 *            Block of node
 	 * 
 	 * @return True, if rule is applied, otherwise false.
 	 */
-	private boolean ruleSeven(ElementBox node)
+	private boolean ruleSeven(ElementBox node, VipsBlock vipsBlock)
 	{
 		//System.err.println("Applying rule Seven on " + node.getNode().getNodeName() + " node");
 		if (node.getSubBoxList().isEmpty())
@@ -990,16 +1695,13 @@ public class VipsParser {
 			return false;
 
 		//String nodeBgColor = node.getStylePropertyValue("background-color");
-		String nodeBgColor = _currentVipsBlock.getBgColor();
+		String nodeBgColor = vipsBlock.getBgColor();
 
-		for (VipsBlock vipsStructureChild : _currentVipsBlock.getChildren())
+		for (VipsBlock vipsStructureChild : vipsBlock.getChildren())
 		{
 			if (!(vipsStructureChild.getBgColor().equals(nodeBgColor)))
 			{
-				vipsStructureChild.setIsDividable(false);
-				vipsStructureChild.setIsVisualBlock(true);
-				// TODO DoC values
-				vipsStructureChild.setDoC(7);
+				markBlock(vipsStructureChild);
 				return true;
 			}
 		}
@@ -1008,20 +1710,6 @@ public class VipsParser {
 	}
 
 
-	private void findTextChildrenNodes(Box node, List<Box> results)
-	{
-		if (node instanceof TextBox)
-		{
-			results.add(node);
-			return;
-		}
-
-		for (Box childNode : ((ElementBox) node).getSubBoxList())
-		{
-			findTextChildrenNodes(childNode, results);
-		}
-	}
-
 	/**
 	 * VIPS Rule Eight
 	 * <p>
@@ -1031,57 +1719,44 @@ public class VipsParser {
 	 * Set the DoC value (from 5-8) based on the html tag of the node.
 	 * @param node
 	 *            Input node
+	 * @param vipsBlock
+	 *            Block of node
 	 * 
 	 * @return True, if rule is applied, otherwise false.
 	 */
-	private boolean ruleEight(ElementBox node)
+	private boolean ruleEight(ElementBox node, VipsBlock vipsBlock)
 	{
 		//System.err.println("Applying rule Eight on " + node.getNode().getNodeName() + " node");
 		if (node.getSubBoxList().isEmpty())
 			return false;
 
 
-		List<Box> children = new ArrayList<Box>();
+		SubtreeAggregate aggregate = getAggregate(node);
 
-		findTextChildrenNodes(node, children);
-
-		int cnt = children.size();
-
-		if (cnt == 0)
+		if (aggregate.textBoxes == 0)
 			return false;
 
 		if (node.getWidth() == 0 || node.getHeight() == 0)
 		{
-			children.clear();
-
-			getAllChildren(node, children);
-
-			for (Box child : children)
-			{
-				if (child.getWidth() != 0 && child.getHeight() != 0)
-					return true;
-			}
+			if (aggregate.sizedBox)
+				return true;
 		}
 
 		if (node.getWidth() * node.getHeight() > _sizeTresholdHeight * _sizeTresholdWidth)
 			return false;
 
-		if (node.getNode().getNodeName().equals("ul"))
+		recordSizeDecision(vipsBlock, node.getWidth() * node.getHeight());
+
+		int tag = getTag(node);
+
+		if (tag == TAG_UL)
 		{
 			return true;
 		}
 
-		_currentVipsBlock.setIsVisualBlock(true);
-		_currentVipsBlock.setIsDividable(false);
-
-		if (node.getNode().getNodeName().equals("Xdiv"))
-			_currentVipsBlock.setDoC(7);
-		else if (node.getNode().getNodeName().equals("code"))
-			_currentVipsBlock.setDoC(7);
-		else if (node.getNode().getNodeName().equals("div"))
-			_currentVipsBlock.setDoC(5);
-		else
-			_currentVipsBlock.setDoC(8);
+		vipsBlock.setIsVisualBlock(true);
+		vipsBlock.setIsDividable(false);
+		vipsBlock.setDoC(RULE_EIGHT_DOC[tag]);
 		return true;
 	}
 
@@ -1093,10 +1768,12 @@ public class VipsParser {
 	 * Set the DoC based on the html tag and size of this node.
 	 * @param node
 	 *            Input node
+	 * @param vipsBlock
+	 *            Block of node
 	 * 
 	 * @return True, if rule is applied, otherwise false.
 	 */
-	private boolean ruleNine(ElementBox node)
+	private boolean ruleNine(ElementBox node, VipsBlock vipsBlock)
 	{
 		//System.err.println("Applying rule Nine on " + node.getNode().getNodeName() + " node");
 		if (node.getSubBoxList().isEmpty())
@@ -1117,16 +1794,13 @@ public class VipsParser {
 		if (maxSize > _sizeTresholdWidth * _sizeTresholdHeight)
 			return true;
 
+		recordSizeDecision(vipsBlock, maxSize);
+
 		//TODO set DOC
-		_currentVipsBlock.setIsVisualBlock(true);
-		_currentVipsBlock.setIsDividable(false);
+		vipsBlock.setIsVisualBlock(true);
+		vipsBlock.setIsDividable(false);
 
-		if (node.getNode().getNodeName().equals("Xdiv"))
-			_currentVipsBlock.setDoC(7);
-		if (node.getNode().getNodeName().equals("a"))
-			_currentVipsBlock.setDoC(11);
-		else
-			_currentVipsBlock.setDoC(8);
+		vipsBlock.setDoC(RULE_NINE_DOC[getTag(node)]);
 
 		return true;
 	}
@@ -1137,23 +1811,26 @@ public class VipsParser {
 	 * If previous sibling node has not been divided, do not divide this node
 	 * @param node
 	 *            Input node
+	 * @param vipsBlock
+	 *            Block of node
 	 * 
 	 * @return True, if rule is applied, otherwise false.
 	 */
-	private boolean ruleTen(ElementBox node)
+	private boolean ruleTen(ElementBox node, VipsBlock vipsBlock)
 	{
 		//System.err.println("Applying rule Ten on " + node.getNode().getNodeName() + " node");
 
-		//VipsBlock previousSiblingVipsBlock = null;
-		//findPreviousSiblingNodeVipsBlock(node.getNode().getPreviousSibling(), _vipsBlocks, previousSiblingVipsBlock);
+		Node previousSibling = node.getNode().getPreviousSibling();
+
+		if (previousSibling == null)
+			return false;
 
-		_tempVipsBlock = null;
-		findPreviousSiblingNodeVipsBlock(node.getNode().getPreviousSibling(), _vipsBlocks);
+		VipsBlock previousSiblingVipsBlock = _blocksByNode.get(previousSibling);
 
-		if (_tempVipsBlock == null)
+		if (previousSiblingVipsBlock == null)
 			return false;
 
-		if (_tempVipsBlock.isAlreadyDivided())
+		if (previousSiblingVipsBlock.isAlreadyDivided())
 			return true;
 
 		return false;
@@ -1165,10 +1842,12 @@ public class VipsParser {
 	 * Divide this node.
 	 * @param node
 	 *            Input node
+	 * @param vipsBlock
+	 *            Block of node
 	 * 
 	 * @return True, if rule is applied, otherwise false.
 	 */
-	private boolean ruleEleven(ElementBox node)
+	private boolean ruleEleven(ElementBox node, VipsBlock vipsBlock)
 	{
 		//System.err.println("Applying rule Eleven on " + node.getNode().getNodeName() + " node");
 
@@ -1182,28 +1861,19 @@ public class VipsParser {
 	 * Set the DoC value based on the html tag and size of this node.
 	 * @param node
 	 *            Input node
+	 * @param vipsBlock
+	 *            Block of node
 	 * 
 	 * @return True, if rule is applied, otherwise false.
 	 */
-	private boolean ruleTwelve(ElementBox node)
+	private boolean ruleTwelve(ElementBox node, VipsBlock vipsBlock)
 	{
 		//System.err.println("Applying rule Twelve on " + node.getNode().getNodeName() + " node");
 
-		_currentVipsBlock.setIsDividable(false);
-		_currentVipsBlock.setIsVisualBlock(true);
-
-		if (node.getNode().getNodeName().equals("Xdiv"))
-			_currentVipsBlock.setDoC(7);
-		else if (node.getNode().getNodeName().equals("li"))
-			_currentVipsBlock.setDoC(8);
-		else if (node.getNode().getNodeName().equals("span"))
-			_currentVipsBlock.setDoC(8);
-		else if (node.getNode().getNodeName().equals("sup"))
-			_currentVipsBlock.setDoC(8);
-		else if (node.getNode().getNodeName().equals("img"))
-			_currentVipsBlock.setDoC(8);
-		else
-			_currentVipsBlock.setDoC(333);
+		vipsBlock.setIsDividable(false);
+		vipsBlock.setIsVisualBlock(true);
+
+		vipsBlock.setDoC(RULE_TWELVE_DOC[getTag(node)]);
 		//TODO DoC Part
 		return true;
 	}
@@ -1244,22 +1914,4 @@ public class VipsParser {
 	{
 		return _vipsBlocks;
 	}
-
-	/**
-	 * Finds previous sibling node's VIPS block.
-	 * @param node Node
-	 * @param vipsBlock Actual VIPS block
-	 * @param foundBlock VIPS block for given node
-	 */
-	private void findPreviousSiblingNodeVipsBlock(Node node, VipsBlock vipsBlock)
-	{
-		if (vipsBlock.getBox().getNode().equals(node))
-		{
-			_tempVipsBlock = vipsBlock;
-			return;
-		}
-		else
-			for (VipsBlock vipsBlockChild : vipsBlock.getChildren())
-				findPreviousSiblingNodeVipsBlock(node, vipsBlockChild);
-	}
 }
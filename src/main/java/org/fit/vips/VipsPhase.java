@@ -0,0 +1,33 @@
+/*
+ * Tomas Popela, 2012
+ * VIPS - Visual Internet Page Segmentation
+ * Module - VipsPhase.java
+ */
+
+package org.fit.vips;
+
+/**
+ * Phases of page segmentation reported to VipsListener.
+ * @author Tomas Popela
+ *
+ */
+public enum VipsPhase {
+	/** Opening of page's source (connection for URL) */
+	FETCH,
+	/** Parsing of HTML to DOM tree */
+	DOM_PARSE,
+	/** Style sheets loading and computing of styles */
+	STYLE_ANALYSIS,
+	/** Rendering of page by CSSBox */
+	LAYOUT,
+	/** Visual blocks detection by VipsParser (once per round) */
+	BLOCK_PARSING,
+	/** Separators detection (once per round) */
+	SEPARATOR_DETECTION,
+	/** Visual structure construction without separators detection (once per round) */
+	STRUCTURE_CONSTRUCTION,
+	/** Separators normalization */
+	NORMALIZATION,
+	/** Writing of XML output */
+	OUTPUT
+}
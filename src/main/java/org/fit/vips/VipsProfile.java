@@ -0,0 +1,71 @@
+/*
+ * Tomas Popela, 2012
+ * VIPS - Visual Internet Page Segmentation
+ * Module - VipsProfile.java
+ */
+
+package org.fit.vips;
+
+/**
+ * Profiles of VIPS rules used during block parsing.
+ * @author Tomas Popela
+ *
+ */
+public enum VipsProfile {
+	/** All rules and checks (default) */
+	FULL(new int[0], true, false),
+	/**
+	 * Faster parsing for bulk processing. Rules three (unique subtree) and
+	 * ten (previous sibling was divided) are skipped, blocks without
+	 * text aren't checked for visible images and inputs and hidden subtrees
+	 * are pruned from block tree.
+	 */
+	FAST(new int[] { 3, 10 }, false, true);
+
+	private final boolean[] _enabledRules = new boolean[13];
+	private final boolean _subtreeValidation;
+	private final boolean _pruning;
+
+	private VipsProfile(int[] disabledRules, boolean subtreeValidation, boolean pruning)
+	{
+		for (int rule = 1; rule <= 12; rule++)
+			_enabledRules[rule] = true;
+
+		for (int rule : disabledRules)
+			_enabledRules[rule] = false;
+
+		this._subtreeValidation = subtreeValidation;
+		this._pruning = pruning;
+	}
+
+	/**
+	 * Checks if rule is used in this profile
+	 * @param rule Number of rule (1-12)
+	 * @return True if rule is used, otherwise false
+	 */
+	public boolean isRuleEnabled(int rule)
+	{
+		return rule >= 1 && rule <= 12 && _enabledRules[rule];
+	}
+
+	/**
+	 * Checks if blocks without text are checked for visible images and
+	 * inputs in their subtree.
+	 * @return True if enabled, otherwise false
+	 */
+	public boolean isSubtreeValidationEnabled()
+	{
+		return _subtreeValidation;
+	}
+
+	/**
+	 * Checks if subtrees, that are hidden (not displayed, invisible, with
+	 * zero size or outside of page) with all their descendants, are left
+	 * out of block tree before VIPS rules are applied.
+	 * @return True if enabled, otherwise false
+	 */
+	public boolean isPruningEnabled()
+	{
+		return _pruning;
+	}
+}
@@ -40,6 +40,7 @@ public class VipsSeparatorGraphicsDetector extends JPanel implements VipsSeparat
 	private List<Separator> _verticalSeparators = null;
 
 	private int _cleanSeparatorsTreshold = 0;
+	private String _outputFolder = "";
 
 	/**
 	 * Defaults constructor.
@@ -983,6 +984,12 @@ public class VipsSeparatorGraphicsDetector extends JPanel implements VipsSeparat
 	 */
 	public void saveToImage(String filename)
 	{
+		if (!_outputFolder.equals(""))
+		{
+			saveToImage(filename, _outputFolder);
+			return;
+		}
+
 		filename = System.getProperty("user.dir") + "/" + filename + ".png";
 		try
 		{
@@ -1014,6 +1021,15 @@ public class VipsSeparatorGraphicsDetector extends JPanel implements VipsSeparat
 		}
 	}
 
+	/**
+	 * Sets folder, where the images are saved
+	 * @param folder Output folder
+	 */
+	public void setOutputFolder(String folder)
+	{
+		_outputFolder = folder;
+	}
+
 	/**
 	 * @return the _horizontalSeparators
 	 */
@@ -0,0 +1,385 @@
+/*
+ * Tomas Popela, 2012
+ * VIPS - Visual Internet Page Segmentation
+ * Module - VipsSeparatorIntervalDetector.java
+ */
+
+package org.fit.vips;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Separators detector with pool of separators stored in sorted arrays.
+ * <p>
+ * Separators are split by visual blocks in the same way as in
+ * VipsSeparatorNonGraphicsDetector (so results are the same), but separator
+ * affected by block is found by binary search and only separators, that
+ * overlap with block, are visited. Weights of separators are computed by
+ * VipsSeparatorNonGraphicsDetector.
+ * @author Tomas Popela
+ *
+ */
+public class VipsSeparatorIntervalDetector extends VipsSeparatorNonGraphicsDetector {
+
+	private final SeparatorPool _pool = new SeparatorPool();
+
+	/**
+	 * Defaults constructor.
+	 * @param width Pools width
+	 * @param height Pools height
+	 */
+	public VipsSeparatorIntervalDetector(int width, int height) {
+		super(width, height);
+	}
+
+	/**
+	 * Creates detector with pool covering only region of page.
+	 * @param x Pools X coordinate
+	 * @param y Pools Y coordinate
+	 * @param width Pools width
+	 * @param height Pools height
+	 */
+	public VipsSeparatorIntervalDetector(int x, int y, int width, int height) {
+		super(x, y, width, height);
+	}
+
+	@Override
+	protected void findVerticalSeparators()
+	{
+		findSeparators(getVerticalSeparators(), false);
+	}
+
+	@Override
+	protected void findHorizontalSeparators()
+	{
+		findSeparators(getHorizontalSeparators(), true);
+	}
+
+	/**
+	 * Splits separators by all visual blocks
+	 * @param separators Separators
+	 * @param horizontal True for horizontal separators, false for vertical
+	 */
+	private void findSeparators(List<Separator> separators, boolean horizontal)
+	{
+		_pool.load(separators);
+
+		for (VipsBlock vipsBlock : getVisualBlocks())
+		{
+			int blockStart = horizontal ? getBlockY(vipsBlock) : getBlockX(vipsBlock);
+			int blockEnd = blockStart + (horizontal ? getBlockHeight(vipsBlock) : getBlockWidth(vipsBlock));
+
+			_pool.addBlock(blockStart, blockEnd, horizontal);
+		}
+
+		_pool.store(separators);
+	}
+
+	/**
+	 * Start and end points of separators in order of pool.
+	 * <p>
+	 * While start points and end points are both non-decreasing, separators
+	 * are found by binary search. Some overlapping blocks can break
+	 * the order, then all separators are visited (same as in
+	 * VipsSeparatorNonGraphicsDetector).
+	 */
+	private static final class SeparatorPool {
+
+		private int[] _starts = new int[16];
+		private int[] _ends = new int[16];
+		private int _size = 0;
+		private boolean _sorted = true;
+
+		/**
+		 * Loads separators to pool
+		 * @param separators Separators
+		 */
+		void load(List<Separator> separators)
+		{
+			_size = 0;
+			for (Separator separator : separators)
+				insert(_size, separator.startPoint, separator.endPoint);
+
+			_sorted = true;
+			checkOrder(0, _size);
+		}
+
+		/**
+		 * Replaces separators with separators from pool
+		 * @param separators Separators
+		 */
+		void store(List<Separator> separators)
+		{
+			separators.clear();
+			for (int i = 0; i < _size; i++)
+				separators.add(new Separator(_starts[i], _ends[i]));
+		}
+
+		/**
+		 * Splits separators by block (see
+		 * VipsSeparatorNonGraphicsDetector.findHorizontalSeparators())
+		 * @param blockStart Block's start point
+		 * @param blockEnd Block's end point
+		 * @param horizontal True for horizontal separators, false for vertical
+		 */
+		void addBlock(int blockStart, int blockEnd, boolean horizontal)
+		{
+			// find separator, that intersects with our visual block
+			int index = firstAbove(_ends, blockStart);
+
+			if (index == _size)
+				return;
+
+			int start = _starts[index];
+			int end = _ends[index];
+
+			// if separator is inside visual block
+			if (blockStart < start && blockEnd >= end)
+			{
+				int from = getFrom(blockStart, blockEnd);
+				int to = removeIncluded(from, getTo(blockStart, blockEnd), blockStart, blockEnd);
+
+				// find separator, that is on end of this block (if exists)
+				for (int i = from; i < to; i++)
+				{
+					if (blockEnd > _starts[i] && blockEnd < _ends[i])
+					{
+						_starts[i] = blockEnd + 1;
+						checkOrder(i - 1, i + 2);
+						break;
+					}
+				}
+				return;
+			}
+			// if block is inside another block -> skip it
+			if (blockEnd < start)
+				return;
+			// if separator starts in the middle of block
+			if ((horizontal ? blockStart <= start : blockStart < start) && blockEnd >= start)
+			{
+				_starts[index] = blockEnd + 1;
+				checkOrder(index - 1, index + 2);
+				return;
+			}
+			// if block is inside the separator
+			if (blockStart >= start && (horizontal ? blockEnd < end : blockEnd <= end))
+			{
+				if (blockStart == start)
+					_starts[index] = blockEnd + 1;
+				else if (blockEnd == end)
+					_ends[index] = blockStart - 1;
+				else
+				{
+					// separator behind the block and separator before block
+					insert(index + 1, blockEnd + 1, end);
+					_ends[index] = blockStart - 1;
+				}
+				checkOrder(index - 1, index + 3);
+				return;
+			}
+			// if in one block is one separator ending and another one starting
+			if (blockStart > start && blockStart < end && index + 1 < _size)
+			{
+				// next separator is really starting before the block ends
+				if (blockEnd > _starts[index + 1] && blockEnd < _ends[index + 1])
+				{
+					_ends[index] = blockStart - 1;
+					_starts[index + 1] = blockEnd + 1;
+					checkOrder(index - 1, index + 3);
+				}
+				else
+					trimOverlapped(getFrom(blockStart, blockEnd), getTo(blockStart, blockEnd), blockStart, blockEnd);
+				return;
+			}
+			// if separator ends in the middle of block
+			_ends[index] = blockStart - 1;
+			checkOrder(index - 1, index + 2);
+		}
+
+		/**
+		 * Returns index of first separator, that can overlap with block
+		 * @param blockStart Block's start point
+		 * @param blockEnd Block's end point
+		 * @return Index
+		 */
+		private int getFrom(int blockStart, int blockEnd)
+		{
+			if (!_sorted)
+				return 0;
+
+			return Math.min(firstAbove(_starts, blockStart), firstAbove(_ends, Math.min(blockStart, blockEnd)));
+		}
+
+		/**
+		 * Returns index behind last separator, that can overlap with block
+		 * @param blockStart Block's start point
+		 * @param blockEnd Block's end point
+		 * @return Index
+		 */
+		private int getTo(int blockStart, int blockEnd)
+		{
+			if (!_sorted)
+				return _size;
+
+			return Math.max(firstAbove(_starts, Math.max(blockStart, blockEnd) - 1), firstAbove(_ends, blockEnd - 1));
+		}
+
+		/**
+		 * Removes separators included in block
+		 * @param from First visited separator
+		 * @param to Index behind last visited separator
+		 * @param blockStart Block's start point
+		 * @param blockEnd Block's end point
+		 * @return Index behind last visited separator after removal
+		 */
+		private int removeIncluded(int from, int to, int blockStart, int blockEnd)
+		{
+			int kept = from;
+
+			for (int i = from; i < to; i++)
+			{
+				if (blockStart < _starts[i] && blockEnd > _ends[i])
+					continue;
+
+				_starts[kept] = _starts[i];
+				_ends[kept] = _ends[i];
+				kept++;
+			}
+
+			removeGap(kept, to);
+			checkOrder(from - 1, kept + 1);
+			return kept;
+		}
+
+		/**
+		 * Removes separators included in block and trims separators, where
+		 * block starts or ends (until separator, where block ends)
+		 * @param from First visited separator
+		 * @param to Index behind last visited separator
+		 * @param blockStart Block's start point
+		 * @param blockEnd Block's end point
+		 */
+		private void trimOverlapped(int from, int to, int blockStart, int blockEnd)
+		{
+			int kept = from;
+			boolean finished = false;
+
+			for (int i = from; i < to; i++)
+			{
+				if (!finished)
+				{
+					if (blockStart < _starts[i] && _ends[i] < blockEnd)
+						continue;
+
+					if (blockEnd > _starts[i] && blockEnd < _ends[i])
+					{
+						_starts[i] = blockEnd + 1;
+						finished = true;
+					}
+					else if (blockStart > _starts[i] && blockStart < _ends[i])
+						_ends[i] = blockStart - 1;
+				}
+
+				_starts[kept] = _starts[i];
+				_ends[kept] = _ends[i];
+				kept++;
+			}
+
+			removeGap(kept, to);
+			checkOrder(from - 1, kept + 1);
+		}
+
+		/**
+		 * Moves separators behind gap to its start
+		 * @param gapStart First index of gap
+		 * @param gapEnd Index behind gap
+		 */
+		private void removeGap(int gapStart, int gapEnd)
+		{
+			if (gapStart == gapEnd)
+				return;
+
+			System.arraycopy(_starts, gapEnd, _starts, gapStart, _size - gapEnd);
+			System.arraycopy(_ends, gapEnd, _ends, gapStart, _size - gapEnd);
+			_size -= gapEnd - gapStart;
+		}
+
+		/**
+		 * Inserts separator
+		 * @param index Index of new separator
+		 * @param start Start point
+		 * @param end End point
+		 */
+		private void insert(int index, int start, int end)
+		{
+			if (_size == _starts.length)
+			{
+				_starts = Arrays.copyOf(_starts, _size * 2);
+				_ends = Arrays.copyOf(_ends, _size * 2);
+			}
+
+			System.arraycopy(_starts, index, _starts, index + 1, _size - index);
+			System.arraycopy(_ends, index, _ends, index + 1, _size - index);
+			_starts[index] = start;
+			_ends[index] = end;
+			_size++;
+		}
+
+		/**
+		 * Returns index of first separator, whose point is bigger than
+		 * value (binary search is used only when points are sorted)
+		 * @param points Start or end points
+		 * @param value Value
+		 * @return Index or size of pool
+		 */
+		private int firstAbove(int[] points, int value)
+		{
+			if (!_sorted)
+			{
+				for (int i = 0; i < _size; i++)
+				{
+					if (points[i] > value)
+						return i;
+				}
+				return _size;
+			}
+
+			int low = 0;
+			int high = _size;
+
+			while (low < high)
+			{
+				int middle = (low + high) >>> 1;
+
+				if (points[middle] > value)
+					high = middle;
+				else
+					low = middle + 1;
+			}
+
+			return low;
+		}
+
+		/**
+		 * Checks, that start and end points are still sorted in given
+		 * range of separators
+		 * @param from First checked separator
+		 * @param to Index behind last checked separator
+		 */
+		private void checkOrder(int from, int to)
+		{
+			if (!_sorted)
+				return;
+
+			for (int i = Math.max(from, 0) + 1; i < Math.min(to, _size); i++)
+			{
+				if (_starts[i - 1] > _starts[i] || _ends[i - 1] > _ends[i])
+				{
+					_sorted = false;
+					return;
+				}
+			}
+		}
+	}
+}
@@ -23,10 +23,14 @@ public class VipsSeparatorNonGraphicsDetector implements VipsSeparatorDetector {
 	private List<Separator> _horizontalSeparators = null;
 	private List<Separator> _verticalSeparators = null;
 
+	private int _x = 0;
+	private int _y = 0;
 	private int _width = 0;
 	private int _height = 0;
 
 	private int _cleanSeparatorsTreshold = 0;
+	// geometry of blocks read when table was loaded (or null)
+	private VipsBlockTable _blockTable = null;
 
 	/**
 	 * Defaults constructor.
@@ -34,6 +38,19 @@ public class VipsSeparatorNonGraphicsDetector implements VipsSeparatorDetector {
 	 * @param height Pools height
 	 */
 	public VipsSeparatorNonGraphicsDetector(int width, int height) {
+		this(0, 0, width, height);
+	}
+
+	/**
+	 * Creates detector with pool covering only region of page.
+	 * @param x Pools X coordinate
+	 * @param y Pools Y coordinate
+	 * @param width Pools width
+	 * @param height Pools height
+	 */
+	public VipsSeparatorNonGraphicsDetector(int x, int y, int width, int height) {
+		this._x = x;
+		this._y = y;
 		this._width = width;
 		this._height = height;
 		this._horizontalSeparators = new ArrayList<Separator>();
@@ -106,15 +123,80 @@ public class VipsSeparatorNonGraphicsDetector implements VipsSeparatorDetector {
 	}
 
 	/**
-	 * Computes vertical visual separators
+	 * Sets table of blocks, from which geometry of visual blocks is read.
+	 * Blocks, that aren't in table, are read from their boxes.
+	 * @param blockTable Table of blocks or null
+	 */
+	public void setBlockTable(VipsBlockTable blockTable)
+	{
+		this._blockTable = blockTable;
+	}
+
+	/**
+	 * Returns position of block in table of blocks
+	 * @param vipsBlock Block
+	 * @return Position or VipsBlockTable.NONE
+	 */
+	private int getTableIndex(VipsBlock vipsBlock)
+	{
+		return (_blockTable != null) ? _blockTable.indexOf(vipsBlock) : VipsBlockTable.NONE;
+	}
+
+	/**
+	 * Returns absolute X coordinate of block's content
+	 * @param vipsBlock Block
+	 * @return X coordinate
+	 */
+	protected int getBlockX(VipsBlock vipsBlock)
+	{
+		int index = getTableIndex(vipsBlock);
+		return (index != VipsBlockTable.NONE) ? _blockTable.getX(index) : vipsBlock.getBox().getAbsoluteContentX();
+	}
+
+	/**
+	 * Returns absolute Y coordinate of block's content
+	 * @param vipsBlock Block
+	 * @return Y coordinate
+	 */
+	protected int getBlockY(VipsBlock vipsBlock)
+	{
+		int index = getTableIndex(vipsBlock);
+		return (index != VipsBlockTable.NONE) ? _blockTable.getY(index) : vipsBlock.getBox().getAbsoluteContentY();
+	}
+
+	/**
+	 * Returns width of block's content
+	 * @param vipsBlock Block
+	 * @return Width
+	 */
+	protected int getBlockWidth(VipsBlock vipsBlock)
+	{
+		int index = getTableIndex(vipsBlock);
+		return (index != VipsBlockTable.NONE) ? _blockTable.getWidth(index) : vipsBlock.getBox().getContentWidth();
+	}
+
+	/**
+	 * Returns height of block's content
+	 * @param vipsBlock Block
+	 * @return Height
+	 */
+	protected int getBlockHeight(VipsBlock vipsBlock)
+	{
+		int index = getTableIndex(vipsBlock);
+		return (index != VipsBlockTable.NONE) ? _blockTable.getHeight(index) : vipsBlock.getBox().getContentHeight();
+	}
+
+	/**
+	 * Computes vertical visual separators (splits pool of separators by
+	 * visual blocks)
 	 */
-	private void findVerticalSeparators()
+	protected void findVerticalSeparators()
 	{
 		for (VipsBlock vipsBlock : _visualBlocks)
 		{
 			// block vertical coordinates
-			int blockStart = vipsBlock.getBox().getAbsoluteContentX();
-			int blockEnd = blockStart + vipsBlock.getBox().getContentWidth();
+			int blockStart = getBlockX(vipsBlock);
+			int blockEnd = blockStart + getBlockWidth(vipsBlock);
 
 			// for each separator that we have in pool
 			for (Separator separator : _verticalSeparators)
@@ -236,15 +318,16 @@ public class VipsSeparatorNonGraphicsDetector implements VipsSeparatorDetector {
 	}
 
 	/**
-	 * Computes horizontal visual separators
+	 * Computes horizontal visual separators (splits pool of separators by
+	 * visual blocks)
 	 */
-	private void findHorizontalSeparators()
+	protected void findHorizontalSeparators()
 	{
 		for (VipsBlock vipsBlock : _visualBlocks)
 		{
 			// block vertical coordinates
-			int blockStart = vipsBlock.getBox().getAbsoluteContentY();
-			int blockEnd = blockStart + vipsBlock.getBox().getContentHeight();
+			int blockStart = getBlockY(vipsBlock);
+			int blockEnd = blockStart + getBlockHeight(vipsBlock);
 
 			// for each separator that we have in pool
 			for (Separator separator : _horizontalSeparators)
@@ -378,7 +461,7 @@ public class VipsSeparatorNonGraphicsDetector implements VipsSeparatorDetector {
 		}
 
 		_horizontalSeparators.clear();
-		_horizontalSeparators.add(new Separator(0, _height));
+		_horizontalSeparators.add(new Separator(_y, _y + _height));
 
 		findHorizontalSeparators();
 
@@ -388,9 +471,9 @@ public class VipsSeparatorNonGraphicsDetector implements VipsSeparatorDetector {
 
 		for (Separator separator : tempSeparators)
 		{
-			if (separator.startPoint == 0)
+			if (separator.startPoint == _y)
 				_horizontalSeparators.remove(separator);
-			if (separator.endPoint == _height)
+			if (separator.endPoint == _y + _height)
 				_horizontalSeparators.remove(separator);
 		}
 
@@ -414,7 +497,7 @@ public class VipsSeparatorNonGraphicsDetector implements VipsSeparatorDetector {
 		}
 
 		_verticalSeparators.clear();
-		_verticalSeparators.add(new Separator(0, _width));
+		_verticalSeparators.add(new Separator(_x, _x + _width));
 
 		findVerticalSeparators();
 
@@ -424,9 +507,9 @@ public class VipsSeparatorNonGraphicsDetector implements VipsSeparatorDetector {
 
 		for (Separator separator : tempSeparators)
 		{
-			if (separator.startPoint == 0)
+			if (separator.startPoint == _x)
 				_verticalSeparators.remove(separator);
-			if (separator.endPoint == _width)
+			if (separator.endPoint == _x + _width)
 				_verticalSeparators.remove(separator);
 		}
 
@@ -552,8 +635,8 @@ public class VipsSeparatorNonGraphicsDetector implements VipsSeparatorDetector {
 	{
 		for (VipsBlock vipsBlock : _visualBlocks)
 		{
-			int topEdge = vipsBlock.getBox().getAbsoluteContentY();
-			int bottomEdge = topEdge + vipsBlock.getBox().getContentHeight();
+			int topEdge = getBlockY(vipsBlock);
+			int bottomEdge = topEdge + getBlockHeight(vipsBlock);
 
 			// two upper edges of element are overlapped with separator
 			if (topEdge > separator.startPoint && topEdge < separator.endPoint && bottomEdge > separator.endPoint)
@@ -586,8 +669,8 @@ public class VipsSeparatorNonGraphicsDetector implements VipsSeparatorDetector {
 	{
 		for (VipsBlock vipsBlock : _visualBlocks)
 		{
-			int leftEdge = vipsBlock.getBox().getAbsoluteContentX();
-			int rightEdge = leftEdge + vipsBlock.getBox().getContentWidth();
+			int leftEdge = getBlockX(vipsBlock);
+			int rightEdge = leftEdge + getBlockWidth(vipsBlock);
 
 			// two left edges of element are overlapped with separator
 			if (leftEdge > separator.startPoint && leftEdge < separator.endPoint && rightEdge > separator.endPoint)
@@ -657,8 +740,8 @@ public class VipsSeparatorNonGraphicsDetector implements VipsSeparatorDetector {
 	{
 		for (VipsBlock vipsBlock : _visualBlocks)
 		{
-			int topEdge = vipsBlock.getBox().getAbsoluteContentY();
-			int bottomEdge = topEdge + vipsBlock.getBox().getContentHeight();
+			int topEdge = getBlockY(vipsBlock);
+			int bottomEdge = topEdge + getBlockHeight(vipsBlock);
 
 			// if box is adjancent to separator from bottom
 			if (topEdge == separator.endPoint + 1 && bottomEdge > separator.endPoint + 1)
@@ -685,8 +768,8 @@ public class VipsSeparatorNonGraphicsDetector implements VipsSeparatorDetector {
 	{
 		for (VipsBlock vipsBlock : _visualBlocks)
 		{
-			int leftEdge = vipsBlock.getBox().getAbsoluteContentX() + 1;
-			int rightEdge = leftEdge + vipsBlock.getBox().getContentWidth();
+			int leftEdge = getBlockX(vipsBlock) + 1;
+			int rightEdge = leftEdge + getBlockWidth(vipsBlock);
 
 			// if box is adjancent to separator from right
 			if (leftEdge == separator.endPoint + 1 && rightEdge > separator.endPoint + 1)
@@ -0,0 +1,149 @@
+/*
+ * Tomas Popela, 2012
+ * VIPS - Visual Internet Page Segmentation
+ * Module - VipsSeparatorSweepDetector.java
+ */
+
+package org.fit.vips;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Separators detector, that finds separators as parts of pool, that aren't
+ * covered by any visual block.
+ * <p>
+ * Start and end points of blocks are sorted once and gaps between blocks
+ * are found in one pass over them. Weights of separators are computed by
+ * VipsSeparatorNonGraphicsDetector.
+ * <p>
+ * Separators aren't always same as from VipsSeparatorNonGraphicsDetector
+ * (use VipsSeparatorIntervalDetector, when they have to be). That detector
+ * splits pool block by block and a block, which starts on the last point
+ * of already found separator, doesn't shorten it. Result depends on order
+ * of blocks, so it can't be found by one sweep. This detector always
+ * shortens such separator by one point - on benchmark page huge.html a link
+ * block then stays in its visual structure instead of being dropped with
+ * the separator, so the output differs in two lines.
+ * @author Tomas Popela
+ *
+ */
+public class VipsSeparatorSweepDetector extends VipsSeparatorNonGraphicsDetector {
+
+	/**
+	 * Defaults constructor.
+	 * @param width Pools width
+	 * @param height Pools height
+	 */
+	public VipsSeparatorSweepDetector(int width, int height) {
+		super(width, height);
+	}
+
+	/**
+	 * Creates detector with pool covering only region of page.
+	 * @param x Pools X coordinate
+	 * @param y Pools Y coordinate
+	 * @param width Pools width
+	 * @param height Pools height
+	 */
+	public VipsSeparatorSweepDetector(int x, int y, int width, int height) {
+		super(x, y, width, height);
+	}
+
+	@Override
+	protected void findVerticalSeparators()
+	{
+		findSeparators(getVerticalSeparators(), false);
+	}
+
+	@Override
+	protected void findHorizontalSeparators()
+	{
+		findSeparators(getHorizontalSeparators(), true);
+	}
+
+	/**
+	 * Replaces pool of separators with parts of pool, that aren't covered by
+	 * visual blocks
+	 * @param separators Pool of separators
+	 * @param horizontal True for horizontal separators, false for vertical
+	 */
+	private void findSeparators(List<Separator> separators, boolean horizontal)
+	{
+		if (separators.isEmpty())
+			return;
+
+		int poolStart = separators.get(0).startPoint;
+		int poolEnd = separators.get(separators.size() - 1).endPoint;
+		List<VipsBlock> visualBlocks = getVisualBlocks();
+		int[] blockStarts = new int[visualBlocks.size()];
+		int[] blockEnds = new int[visualBlocks.size()];
+		int count = 0;
+
+		for (VipsBlock vipsBlock : visualBlocks)
+		{
+			int blockStart = horizontal ? getBlockY(vipsBlock) : getBlockX(vipsBlock);
+			int blockEnd = blockStart + (horizontal ? getBlockHeight(vipsBlock) : getBlockWidth(vipsBlock));
+
+			if (blockEnd < blockStart)
+				continue;
+
+			blockStarts[count] = blockStart;
+			blockEnds[count] = blockEnd;
+			count++;
+		}
+
+		Arrays.sort(blockStarts, 0, count);
+		Arrays.sort(blockEnds, 0, count);
+
+		separators.clear();
+
+		// first point, that isn't covered by already visited blocks
+		int uncovered = poolStart;
+		int coveringBlocks = 0;
+		int endIndex = 0;
+
+		for (int startIndex = 0; startIndex < count; )
+		{
+			// blocks include their end points, so block starting on end of
+			// another block is handled first
+			if (blockStarts[startIndex] <= blockEnds[endIndex])
+			{
+				if (coveringBlocks == 0 && blockStarts[startIndex] > uncovered)
+					addSeparator(separators, uncovered, blockStarts[startIndex] - 1, poolStart, poolEnd);
+
+				coveringBlocks++;
+				startIndex++;
+			}
+			else
+			{
+				coveringBlocks--;
+				if (coveringBlocks == 0)
+					uncovered = Math.max(uncovered, blockEnds[endIndex] + 1);
+				endIndex++;
+			}
+		}
+
+		if (count > 0)
+			uncovered = Math.max(uncovered, blockEnds[count - 1] + 1);
+
+		addSeparator(separators, uncovered, poolEnd, poolStart, poolEnd);
+	}
+
+	/**
+	 * Adds part of separator, that is inside pool
+	 * @param separators Separators
+	 * @param start Separator's start point
+	 * @param end Separator's end point
+	 * @param poolStart Pool's start point
+	 * @param poolEnd Pool's end point
+	 */
+	private void addSeparator(List<Separator> separators, int start, int end, int poolStart, int poolEnd)
+	{
+		start = Math.max(start, poolStart);
+		end = Math.min(end, poolEnd);
+
+		if (start <= end)
+			separators.add(new Separator(start, end));
+	}
+}
@@ -0,0 +1,738 @@
+/*
+ * Tomas Popela, 2012
+ * VIPS - Visual Internet Page Segmentation
+ * Module - VipsSession.java
+ */
+
+package org.fit.vips;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+
+
+import org.fit.cssbox.css.CSSNorm;
+import org.fit.cssbox.css.DOMAnalyzer;
+import org.fit.cssbox.io.DOMSource;
+import org.fit.cssbox.io.DefaultDOMSource;
+import org.fit.cssbox.io.DefaultDocumentSource;
+import org.fit.cssbox.io.DocumentSource;
+import org.fit.cssbox.io.StreamDocumentSource;
+import org.fit.cssbox.layout.Box;
+import org.fit.cssbox.layout.BoxFactory;
+import org.fit.cssbox.layout.BrowserCanvas;
+import org.fit.cssbox.layout.BrowserConfig;
+import org.fit.cssbox.layout.ElementBox;
+import org.fit.cssbox.layout.Viewport;
+import org.fit.cssbox.layout.VisualContext;
+import org.w3c.dom.Document;
+import org.xml.sax.SAXException;
+
+/**
+ * Segmentation of one page with configuration taken from VipsEngine.
+ * <p>
+ * Session is not thread-safe, but it keeps all its state locally, so
+ * different sessions can run in parallel.
+ * @author Tomas Popela
+ *
+ */
+public class VipsSession {
+
+	private final VipsEngine _engine;
+	private final URL _url;
+	private String _filename = "";
+	private InputStream _inputStream = null;
+	private File _inputFile = null;
+	private Document _document = null;
+	// deadline of segmentation (System.nanoTime()) or 0 for no deadline
+	private long _deadline = 0;
+
+	private DOMAnalyzer _domAnalyzer = null;
+	private BrowserCanvas _browserCanvas = null;
+	private Viewport _viewport = null;
+	private VisualStructure _visualStructure = null;
+	private String _outputFolder = "";
+	private long _executionTime = 0;
+	private int _iterations = 0;
+	private VipsListener _listener = null;
+
+	/**
+	 * Creates session for page on given URL.
+	 * @param engine Engine with configuration
+	 * @param url Page's URL
+	 */
+	VipsSession(VipsEngine engine, URL url)
+	{
+		this._engine = engine;
+		this._url = url;
+		this._filename = engine.getOutputFileName();
+		this._listener = engine.getListener();
+	}
+
+	/**
+	 * Sets listener for this session only (overrides engine's listener).
+	 * @param listener Listener or null to disable measuring
+	 */
+	public void setListener(VipsListener listener)
+	{
+		this._listener = listener;
+	}
+
+	/**
+	 * Returns start time of phase, when there is a listener.
+	 * @return Start time in nanoseconds or 0
+	 */
+	private long startPhase()
+	{
+		return (_listener != null) ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Returns time elapsed from start of phase, when there is a listener.
+	 * @param startTime Start time of phase
+	 * @return Elapsed time in nanoseconds or 0
+	 */
+	private long elapsedTime(long startTime)
+	{
+		return (_listener != null) ? System.nanoTime() - startTime : 0;
+	}
+
+	/**
+	 * Reports finished phase to listener.
+	 * @param phase Phase
+	 * @param iteration Number of round or 0
+	 * @param startTime Start time of phase
+	 */
+	private void finishPhase(VipsPhase phase, int iteration, long startTime)
+	{
+		if (_listener != null)
+			_listener.phaseFinished(this, phase, iteration, System.nanoTime() - startTime);
+	}
+
+	/**
+	 * Reports counter to listener.
+	 * @param counter Counter
+	 * @param iteration Number of round or 0
+	 * @param value Value
+	 */
+	private void reportCounter(VipsCounter counter, int iteration, long value)
+	{
+		if (_listener != null)
+			_listener.counterReported(this, counter, iteration, value);
+	}
+
+	/**
+	 * Counts boxes in subtree of given box
+	 * @param box Box
+	 * @return Number of boxes
+	 */
+	private static long countBoxes(Box box)
+	{
+		VipsTraversalStack<Box> stack = new VipsTraversalStack<Box>();
+		long count = 0;
+		stack.push(box);
+
+		while (!stack.isEmpty())
+		{
+			Box actualBox = stack.pop();
+			count++;
+
+			if (actualBox instanceof ElementBox)
+			{
+				for (Box child : ((ElementBox) actualBox).getSubBoxList())
+					stack.push(child);
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * Counts separators in subtree of given structure
+	 * @param visualStructure Visual structure
+	 * @return Number of separators
+	 */
+	private static long countSeparators(VisualStructure visualStructure)
+	{
+		VipsTraversalStack<VisualStructure> stack = new VipsTraversalStack<VisualStructure>();
+		long count = 0;
+		stack.push(visualStructure);
+
+		while (!stack.isEmpty())
+		{
+			VisualStructure structure = stack.pop();
+			count += structure.getHorizontalSeparators().size() + structure.getVerticalSeparators().size();
+
+			for (VisualStructure child : structure.getChildrenVisualStructures())
+				stack.push(child);
+		}
+
+		return count;
+	}
+
+	/**
+	 * Counts visual structures in subtree of given structure
+	 * @param visualStructure Visual structure
+	 * @return Number of visual structures
+	 */
+	private static long countVisualStructures(VisualStructure visualStructure)
+	{
+		VipsTraversalStack<VisualStructure> stack = new VipsTraversalStack<VisualStructure>();
+		long count = 0;
+		stack.push(visualStructure);
+
+		while (!stack.isEmpty())
+		{
+			count++;
+
+			for (VisualStructure child : stack.pop().getChildrenVisualStructures())
+				stack.push(child);
+		}
+
+		return count;
+	}
+
+	/**
+	 * Sets output filename (without extension) for this session only.
+	 * @param filename Filename
+	 */
+	public void setOutputFileName(String filename)
+	{
+		if (!filename.equals(""))
+		{
+			_filename = filename;
+		}
+		else
+		{
+			System.err.println("Invalid filename!");
+		}
+	}
+
+	/**
+	 * Sets page's HTML source, that is used instead of opening page's URL.
+	 * @param input Page's HTML source
+	 */
+	void setInput(InputStream input)
+	{
+		this._inputStream = input;
+	}
+
+	/**
+	 * Sets local file with page, that is used instead of opening page's URL.
+	 * @param file HTML file
+	 */
+	void setInput(File file)
+	{
+		this._inputFile = file;
+	}
+
+	/**
+	 * Sets already parsed page, HTML parsing is skipped.
+	 * @param document Page's DOM tree
+	 */
+	void setInput(Document document)
+	{
+		this._document = document;
+	}
+
+	/**
+	 * Sets deadline of segmentation. Page is then fetched with connect and
+	 * read timeouts, that are derived from time remaining to deadline.
+	 * @param deadline Deadline (in System.nanoTime() units) or 0 for no deadline
+	 */
+	void setDeadline(long deadline)
+	{
+		this._deadline = deadline;
+	}
+
+	/**
+	 * Returns time remaining to deadline
+	 * @return Remaining time in milliseconds (at least one)
+	 * @throws InterruptedIOException When deadline was already exceeded
+	 */
+	private int getRemainingTime() throws InterruptedIOException
+	{
+		long remaining = (_deadline - System.nanoTime()) / 1000000;
+
+		if (remaining <= 0)
+			throw new InterruptedIOException("Deadline of " + _url + " was exceeded");
+
+		return (int) Math.min(remaining, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Creates source of page's HTML code.
+	 * @return Document source
+	 * @throws IOException
+	 */
+	private DocumentSource createDocumentSource() throws IOException
+	{
+		if (_inputStream != null)
+			return new StreamDocumentSource(_inputStream, _url, "text/html");
+		else if (_inputFile != null)
+			return new StreamDocumentSource(new FileInputStream(_inputFile), _url, "text/html");
+		else if (_deadline != 0)
+			return openDocumentSource();
+		else
+			return new DefaultDocumentSource(_url);
+	}
+
+	/**
+	 * Opens connection to page's URL with timeouts bounded by deadline
+	 * (CSSBox's DefaultDocumentSource has no timeouts, so blocked fetch
+	 * would never end).
+	 * @return Document source
+	 * @throws IOException
+	 */
+	private DocumentSource openDocumentSource() throws IOException
+	{
+		URLConnection connection = _url.openConnection();
+		connection.setRequestProperty("User-Agent", DefaultDocumentSource.getUserAgent());
+		connection.setConnectTimeout(getRemainingTime());
+		connection.connect();
+		connection.setReadTimeout(getRemainingTime());
+
+		InputStream input = connection.getInputStream();
+		String contentType = connection.getContentType();
+
+		return new StreamDocumentSource(input, connection.getURL(), (contentType != null) ? contentType : "text/html");
+	}
+
+	/**
+	 * Parses page source to DOM tree.
+	 * @return DOM tree
+	 * @throws IOException
+	 * @throws SAXException
+	 */
+	private Document parseDocument() throws IOException, SAXException
+	{
+		long startTime = startPhase();
+		DocumentSource docSource = createDocumentSource();
+		finishPhase(VipsPhase.FETCH, 0, startTime);
+		try
+		{
+			startTime = startPhase();
+			DOMSource parser = new DefaultDOMSource(docSource);
+
+			Document domTree = parser.parse();
+			finishPhase(VipsPhase.DOM_PARSE, 0, startTime);
+
+			return domTree;
+		}
+		finally
+		{
+			docSource.close();
+		}
+	}
+
+	/**
+	 * Parses a builds DOM tree from page source.
+	 * @throws IOException
+	 * @throws SAXException
+	 */
+	private void getDomTree() throws IOException, SAXException
+	{
+		Document domTree = (_document != null) ? _document : parseDocument();
+
+		long startTime = startPhase();
+		_domAnalyzer = new DOMAnalyzer(domTree, _url);
+		_domAnalyzer.attributesToStyles();
+		_domAnalyzer.addStyleSheet(null, CSSNorm.stdStyleSheet(), DOMAnalyzer.Origin.AGENT);
+		_domAnalyzer.addStyleSheet(null, CSSNorm.userStyleSheet(), DOMAnalyzer.Origin.AGENT);
+
+		if (_engine.getStyleSheetCache() != null)
+			_engine.getStyleSheetCache().addDocumentStyleSheets(_domAnalyzer);
+		else
+			_domAnalyzer.getStyleSheets();
+		finishPhase(VipsPhase.STYLE_ANALYSIS, 0, startTime);
+	}
+
+	/**
+	 * Renders page and gets page's viewport
+	 */
+	private void createViewport()
+	{
+		long startTime = startPhase();
+		java.awt.Dimension dimension = new java.awt.Dimension(_engine.getViewportWidth(), _engine.getViewportHeight());
+
+		if (_engine.isGraphicsOutputEnabled())
+		{
+			_browserCanvas = new BrowserCanvas(_domAnalyzer.getRoot(), _domAnalyzer, dimension, _url);
+			_viewport = _browserCanvas.getViewport();
+		}
+		else
+			_viewport = createLayout(dimension);
+		finishPhase(VipsPhase.LAYOUT, 0, startTime);
+	}
+
+	/**
+	 * Lays out page without BrowserCanvas (same steps as
+	 * BrowserCanvas.createLayout(), but page isn't drawn, so no Swing
+	 * component and no image of page are created). Text is measured by
+	 * graphics of one pixel image.
+	 * @param dimension Viewport's size
+	 * @return Viewport
+	 */
+	private Viewport createLayout(java.awt.Dimension dimension)
+	{
+		_domAnalyzer.getMediaSpec().setDimensions(dimension.width, dimension.height);
+		_domAnalyzer.recomputeStyles();
+
+		BoxFactory factory = new BoxFactory(_domAnalyzer, _url);
+		factory.setConfig(new BrowserConfig());
+		factory.reset();
+
+		// boxes keep graphics for measuring, so it isn't disposed
+		Graphics2D graphics = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB).createGraphics();
+		Viewport viewport = factory.createViewportTree(_domAnalyzer.getRoot(), graphics,
+				new VisualContext(null, factory), dimension.width, dimension.height);
+		viewport.setVisibleRect(new java.awt.Rectangle(dimension));
+		viewport.initSubtree();
+		viewport.doLayout(dimension.width, true, true);
+		viewport.updateBounds(dimension);
+		viewport.absolutePositions();
+
+		return viewport;
+	}
+
+	/**
+	 * Generates folder filename
+	 * @return Folder filename
+	 */
+	private String generateFolderName()
+	{
+		String outputFolder = "";
+
+		Calendar cal = Calendar.getInstance();
+		SimpleDateFormat sdf = new SimpleDateFormat("dd_MM_yyyy_HH_mm_ss");
+		outputFolder += sdf.format(cal.getTime());
+		outputFolder += "_";
+		outputFolder += _url.getHost().replaceAll("\\.", "_").replaceAll("/", "_");
+
+		return outputFolder;
+	}
+
+	/**
+	 * Prepares folder, where the output of this session is written.
+	 */
+	private void prepareOutputFolder()
+	{
+		File outputFolder = _engine.getOutputDirectory();
+
+		if (_engine.isOutputToFolderEnabled())
+		{
+			File newFolder = new File(outputFolder, generateFolderName());
+
+			if (!newFolder.mkdir() && !newFolder.isDirectory())
+				System.err.println("Something goes wrong during directory creation!");
+			else
+				outputFolder = newFolder;
+		}
+
+		_outputFolder = outputFolder.getPath();
+	}
+
+	/**
+	 * Stops the segmentation when current thread was interrupted (i.e. when
+	 * the page exceeded its deadline).
+	 * @throws InterruptedIOException
+	 */
+	private void checkInterrupted() throws InterruptedIOException
+	{
+		if (Thread.currentThread().isInterrupted())
+			throw new InterruptedIOException("Segmentation of " + _url + " was interrupted");
+	}
+
+	/**
+	 * Returns intersection of two rectangles
+	 * @param first Array with X, Y, width and height or null
+	 * @param second Array with X, Y, width and height
+	 * @return Intersection (with zero size, when rectangles don't intersect)
+	 */
+	private static int[] intersectRegions(int[] first, int[] second)
+	{
+		if (first == null)
+			return second;
+
+		int x = Math.max(first[0], second[0]);
+		int y = Math.max(first[1], second[1]);
+		int width = Math.min(first[0] + first[2], second[0] + second[2]) - x;
+		int height = Math.min(first[1] + first[3], second[1] + second[3]) - y;
+
+		return new int[] { x, y, Math.max(width, 0), Math.max(height, 0) };
+	}
+
+	/**
+	 * Performs page segmentation.
+	 * @throws InterruptedIOException
+	 */
+	private void performSegmentation() throws InterruptedIOException
+	{
+		int numberOfIterations = 10;
+		int pageWidth = _viewport.getWidth();
+		int pageHeight = _viewport.getHeight();
+		int sizeTresholdWidth = _engine.getSizeTresholdWidth();
+		int sizeTresholdHeight = _engine.getSizeTresholdHeight();
+		boolean graphicsOutput = _engine.isGraphicsOutputEnabled();
+
+		VipsImageExporter imageExporter = null;
+		if (graphicsOutput)
+		{
+			imageExporter = new VipsImageExporter(pageWidth, pageHeight, _outputFolder);
+			imageExporter.exportPage(_browserCanvas);
+		}
+
+		VipsParser vipsParser = new VipsParser(_viewport);
+		vipsParser.enableIncrementalParsing(_engine.isIncrementalParsingEnabled());
+		vipsParser.setProfile(_engine.getProfile());
+		vipsParser.enablePruning(_engine.isPruningEnabled());
+		vipsParser.setForkJoinPool(_engine.getForkJoinPool());
+		vipsParser.setParallelCutoff(_engine.getParallelCutoff());
+		for (int rule = 1; rule <= 12; rule++)
+			vipsParser.enableRule(rule, _engine.isVipsRuleEnabled(rule));
+
+		// region of interest (null for whole page)
+		int[] region = _engine.getRegion();
+		if (_engine.getRegionSelector() != null)
+		{
+			ElementBox regionRoot = new VipsElementSelector(_engine.getRegionSelector())
+					.findElementBox(_viewport.getElementBoxByName("body", false));
+
+			if (regionRoot == null)
+				System.err.println("No element matches " + _engine.getRegionSelector() + "! Whole page is segmented.");
+			else
+			{
+				vipsParser.setRoot(regionRoot);
+				region = intersectRegions(region, new int[] { regionRoot.getAbsoluteContentX(),
+						regionRoot.getAbsoluteContentY(), regionRoot.getContentWidth(), regionRoot.getContentHeight() });
+			}
+		}
+		if (region != null)
+			vipsParser.setRegion(region[0], region[1], region[2], region[3]);
+
+		int[] pDoCs = _engine.getPredefinedDoCs();
+		// segment to the finest requested granularity
+		int pDoC = (pDoCs.length > 0) ? pDoCs[pDoCs.length - 1] : _engine.getPredefinedDoC();
+		VisualStructureConstructor constructor = new VisualStructureConstructor(pDoC);
+		constructor.setGraphicsOutput(graphicsOutput);
+		constructor.setOutputFolder(_outputFolder);
+		constructor.enableSweepLineDetection(_engine.isSweepLineDetectionEnabled());
+		constructor.enableTimeMeasurement(_listener != null);
+		if (region != null)
+			constructor.setRegion(region[0], region[1], region[2], region[3]);
+
+		// structure is same as in previous round and following rounds are
+		// constructed in the same way
+		boolean structureFixed = false;
+
+		for (int iterationNumber = 1; iterationNumber < numberOfIterations+1; iterationNumber++)
+		{
+			checkInterrupted();
+
+			// prepare tresholds for this iteration
+			if (iterationNumber > 1 && iterationNumber <= 6)
+			{
+				sizeTresholdHeight -= 50;
+				sizeTresholdWidth -= 50;
+
+			}
+			if (iterationNumber == 7)
+			{
+				sizeTresholdHeight = 100;
+				sizeTresholdWidth = 100;
+			}
+			if (iterationNumber == 8)
+			{
+				sizeTresholdHeight = 80;
+				sizeTresholdWidth = 80;
+			}
+			if (iterationNumber == 9)
+			{
+				sizeTresholdHeight = 40;
+				sizeTresholdWidth = 10;
+			}
+			if (iterationNumber == 10)
+			{
+				sizeTresholdHeight = 1;
+				sizeTresholdWidth = 1;
+			}
+
+			// round, whose treshold doesn't change any block, would only
+			// repeat fixed structure
+			if (structureFixed && !vipsParser.dependsOnSizeTreshold(sizeTresholdWidth * sizeTresholdHeight))
+				continue;
+
+			//visual blocks detection
+			vipsParser.setSizeTresholdHeight(sizeTresholdHeight);
+			vipsParser.setSizeTresholdWidth(sizeTresholdWidth);
+
+			long startTime = startPhase();
+			vipsParser.parse();
+			finishPhase(VipsPhase.BLOCK_PARSING, iterationNumber, startTime);
+
+			long structureTime = 0;
+			VipsBlock vipsBlocks = vipsParser.getVipsBlocks();
+
+			if (iterationNumber == 1)
+			{
+				// in first round we'll export global separators
+				if (graphicsOutput)
+					imageExporter.exportBlocks(vipsBlocks, iterationNumber);
+
+				// visual structure construction
+				startTime = startPhase();
+				constructor.setVipsBlocks(vipsParser.getBlockTable());
+				constructor.setPageSize(pageWidth, pageHeight);
+				structureTime += elapsedTime(startTime);
+			}
+			else
+			{
+				startTime = startPhase();
+				constructor.updateVipsBlocks(vipsParser.getBlockTable());
+				structureTime += elapsedTime(startTime);
+
+				if (graphicsOutput)
+					imageExporter.exportVisualBlocks(constructor.getVisualBlocks(), iterationNumber);
+			}
+
+			// visual structure construction
+			startTime = startPhase();
+			constructor.constructVisualStructure();
+			structureTime += elapsedTime(startTime);
+			_iterations++;
+
+			if (_listener != null)
+			{
+				long separatorTime = constructor.getSeparatorDetectionTime();
+				_listener.phaseFinished(this, VipsPhase.SEPARATOR_DETECTION, iterationNumber, separatorTime);
+				_listener.phaseFinished(this, VipsPhase.STRUCTURE_CONSTRUCTION, iterationNumber, structureTime - separatorTime);
+				reportCounter(VipsCounter.VISUAL_BLOCKS, iterationNumber, constructor.getVisualBlocks().size());
+				reportCounter(VipsCounter.SEPARATORS, iterationNumber, countSeparators(constructor.getVisualStructure()));
+			}
+
+			// construction differs only in first three rounds
+			if (_engine.isAdaptiveSegmentationEnabled())
+				structureFixed = !constructor.hasStructureChanged() && _iterations >= 4;
+		}
+
+		checkInterrupted();
+
+		long startTime = startPhase();
+		//		constructor.normalizeSeparatorsSoftMax();
+		constructor.normalizeSeparatorsMinMax();
+		finishPhase(VipsPhase.NORMALIZATION, 0, startTime);
+
+		_visualStructure = constructor.getVisualStructure();
+
+		if (_listener != null)
+		{
+			reportCounter(VipsCounter.BOXES, 0, countBoxes(_viewport));
+			reportCounter(VipsCounter.VISUAL_BLOCKS, 0, constructor.getVisualBlocks().size());
+			reportCounter(VipsCounter.SEPARATORS, 0, countSeparators(_visualStructure));
+			reportCounter(VipsCounter.VISUAL_STRUCTURES, 0, countVisualStructures(_visualStructure));
+			reportCounter(VipsCounter.ITERATIONS, 0, _iterations);
+			for (int rule = 1; rule <= 12; rule++)
+				reportCounter(VipsCounter.forRule(rule), 0, vipsParser.getRuleDecisions(rule));
+			reportCounter(VipsCounter.NO_RULE, 0, vipsParser.getRuleDecisions(0));
+			reportCounter(VipsCounter.PRUNED_SUBTREES, 0, vipsParser.getPrunedSubtrees());
+			reportCounter(VipsCounter.PRUNED_BOXES, 0, vipsParser.getPrunedBoxes());
+		}
+
+		if (_engine.isXmlOutputEnabled())
+		{
+			startTime = startPhase();
+			VipsOutput vipsOutput = new VipsOutput(_engine.getPredefinedDoC());
+			vipsOutput.setEscapeOutput(_engine.isOutputEscapingEnabled());
+			vipsOutput.setOutputFileName(_filename);
+			vipsOutput.setOutputFolder(_outputFolder);
+			if (pDoCs.length > 0)
+				vipsOutput.writeXML(_visualStructure, _viewport, pDoCs);
+			else
+				vipsOutput.writeXML(_visualStructure, _viewport);
+			finishPhase(VipsPhase.OUTPUT, 0, startTime);
+		}
+	}
+
+	/**
+	 * Starts visual segmentation of page.
+	 * @return Final visual structure of page
+	 * @throws IOException
+	 * @throws SAXException
+	 */
+	public VisualStructure segment() throws IOException, SAXException
+	{
+		getDomTree();
+		checkInterrupted();
+		createViewport();
+		checkInterrupted();
+		prepareOutputFolder();
+
+		long startTime = System.nanoTime();
+		performSegmentation();
+		_executionTime = System.nanoTime() - startTime;
+
+		return _visualStructure;
+	}
+
+	/**
+	 * Returns page's URL
+	 * @return URL
+	 */
+	public URL getUrl()
+	{
+		return _url;
+	}
+
+	/**
+	 * Returns rendered page's viewport
+	 * @return Viewport or null if page wasn't rendered yet
+	 */
+	public Viewport getViewport()
+	{
+		return _viewport;
+	}
+
+	/**
+	 * Returns final visual structure of page
+	 * @return Visual structure or null if segmentation wasn't performed yet
+	 */
+	public VisualStructure getVisualStructure()
+	{
+		return _visualStructure;
+	}
+
+	/**
+	 * Returns folder where output of this session is written
+	 * @return Output folder
+	 */
+	public String getOutputFolder()
+	{
+		return _outputFolder;
+	}
+
+	/**
+	 * Returns number of segmentation rounds that were run
+	 * @return Number of rounds
+	 */
+	public int getIterations()
+	{
+		return _iterations;
+	}
+
+	/**
+	 * Returns execution time of segmentation (without page rendering)
+	 * @return Execution time in nanoseconds
+	 */
+	public long getExecutionTime()
+	{
+		return _executionTime;
+	}
+}
@@ -0,0 +1,270 @@
+/*
+ * Tomas Popela, 2012
+ * VIPS - Visual Internet Page Segmentation
+ * Module - VipsStyleSheetCache.java
+ */
+
+package org.fit.vips;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.fit.cssbox.css.DOMAnalyzer;
+
+import cz.vutbr.web.css.CSSFactory;
+import cz.vutbr.web.css.NetworkProcessor;
+import cz.vutbr.web.csskit.DefaultNetworkProcessor;
+
+/**
+ * Cache of external style sheets shared by sessions.
+ * <p>
+ * Style sheets are cached by URL with LRU eviction and same contents from
+ * different URLs are stored only once (by hash of contents). Cache keeps
+ * only downloaded contents, style sheets are still parsed for every page -
+ * DOMAnalyzer has no public method for adding parsed style sheet and
+ * jStyleParser merges all page's style sheets to one.
+ * @author Tomas Popela
+ *
+ */
+public class VipsStyleSheetCache implements NetworkProcessor {
+
+	// cache used by style analysis running in thread
+	private static final ThreadLocal<VipsStyleSheetCache> _activeCache = new ThreadLocal<VipsStyleSheetCache>();
+	private static boolean _networkProcessorInstalled = false;
+
+	private final NetworkProcessor _networkProcessor = new DefaultNetworkProcessor();
+	private final int _maxEntries;
+	// cached style sheets by URL in access order
+	private final LinkedHashMap<String, CachedStyleSheet> _entries;
+	// contents by hash, shared by entries with same contents
+	private final Map<String, CachedStyleSheet> _contents = new HashMap<String, CachedStyleSheet>();
+	private long _hits = 0;
+	private long _misses = 0;
+
+	/**
+	 * Contents of cached style sheet
+	 */
+	private static class CachedStyleSheet {
+		final byte[] data;
+		final String hash;
+		int references = 0;
+
+		CachedStyleSheet(byte[] data, String hash)
+		{
+			this.data = data;
+			this.hash = hash;
+		}
+	}
+
+	/**
+	 * Creates cache for given number of style sheets
+	 * @param maxEntries Maximal number of cached URLs
+	 */
+	public VipsStyleSheetCache(int maxEntries)
+	{
+		this._maxEntries = maxEntries;
+		this._entries = new LinkedHashMap<String, CachedStyleSheet>(16, 0.75f, true);
+	}
+
+	/**
+	 * Installs network processor of jStyleParser, that downloads style
+	 * sheets through cache of actual thread (other style sheets are
+	 * downloaded by previously installed processor).
+	 */
+	private static synchronized void installNetworkProcessor()
+	{
+		if (_networkProcessorInstalled)
+			return;
+
+		final NetworkProcessor previousNetworkProcessor = CSSFactory.getNetworkProcessor();
+
+		CSSFactory.setNetworkProcessor(new NetworkProcessor() {
+			@Override
+			public InputStream fetch(URL url) throws IOException
+			{
+				VipsStyleSheetCache cache = _activeCache.get();
+
+				return (cache != null) ? cache.fetch(url) : previousNetworkProcessor.fetch(url);
+			}
+		});
+
+		_networkProcessorInstalled = true;
+	}
+
+	/**
+	 * Loads style sheets used in page to analyzer (same as
+	 * DOMAnalyzer.getStyleSheets()). External style sheets are taken from
+	 * this cache.
+	 * @param analyzer Analyzer
+	 */
+	public void addDocumentStyleSheets(DOMAnalyzer analyzer)
+	{
+		installNetworkProcessor();
+		_activeCache.set(this);
+
+		try
+		{
+			analyzer.getStyleSheets();
+		}
+		finally
+		{
+			_activeCache.remove();
+		}
+	}
+
+	/**
+	 * Counts hash of style sheet's contents
+	 * @param data Contents
+	 * @return Hash
+	 */
+	private static String countHash(byte[] data)
+	{
+		try
+		{
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			StringBuilder hash = new StringBuilder();
+			for (byte b : digest.digest(data))
+				hash.append(String.format("%02x", b));
+
+			return hash.toString();
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			return data.length + ":" + Arrays.hashCode(data);
+		}
+	}
+
+	/**
+	 * Stores contents of style sheet
+	 * @param url Style sheet's URL
+	 * @param data Contents
+	 */
+	private synchronized void put(String url, byte[] data)
+	{
+		String hash = countHash(data);
+		CachedStyleSheet contents = _contents.get(hash);
+
+		if (contents == null)
+		{
+			contents = new CachedStyleSheet(data, hash);
+			_contents.put(hash, contents);
+		}
+
+		contents.references++;
+		release(_entries.put(url, contents));
+
+		while (_entries.size() > _maxEntries)
+		{
+			Map.Entry<String, CachedStyleSheet> eldest = _entries.entrySet().iterator().next();
+			_entries.remove(eldest.getKey());
+			release(eldest.getValue());
+		}
+	}
+
+	/**
+	 * Releases contents, that isn't used by removed URL
+	 * @param contents Contents or null
+	 */
+	private void release(CachedStyleSheet contents)
+	{
+		if (contents == null)
+			return;
+
+		contents.references--;
+		if (contents.references == 0)
+			_contents.remove(contents.hash);
+	}
+
+	/**
+	 * Returns cached contents of style sheet
+	 * @param url Style sheet's URL
+	 * @return Contents or null
+	 */
+	private synchronized byte[] get(String url)
+	{
+		CachedStyleSheet contents = _entries.get(url);
+
+		if (contents == null)
+		{
+			_misses++;
+			return null;
+		}
+
+		_hits++;
+		return contents.data;
+	}
+
+	@Override
+	public InputStream fetch(URL url) throws IOException
+	{
+		String key = url.toString();
+		byte[] data = get(key);
+
+		if (data == null)
+		{
+			InputStream input = _networkProcessor.fetch(url);
+			try
+			{
+				ByteArrayOutputStream output = new ByteArrayOutputStream();
+				byte[] buffer = new byte[8192];
+				int length;
+				while ((length = input.read(buffer)) != -1)
+					output.write(buffer, 0, length);
+				data = output.toByteArray();
+			}
+			finally
+			{
+				input.close();
+			}
+
+			put(key, data);
+		}
+
+		return new ByteArrayInputStream(data);
+	}
+
+	/**
+	 * Returns number of style sheets, that were taken from cache
+	 * @return Number of hits
+	 */
+	public synchronized long getHits()
+	{
+		return _hits;
+	}
+
+	/**
+	 * Returns number of style sheets, that had to be downloaded
+	 * @return Number of misses
+	 */
+	public synchronized long getMisses()
+	{
+		return _misses;
+	}
+
+	/**
+	 * Returns number of cached URLs
+	 * @return Number of URLs
+	 */
+	public synchronized int size()
+	{
+		return _entries.size();
+	}
+
+	/**
+	 * Returns number of different cached contents
+	 * @return Number of contents
+	 */
+	public synchronized int getContentsCount()
+	{
+		return _contents.size();
+	}
+}
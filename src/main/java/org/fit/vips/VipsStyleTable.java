@@ -0,0 +1,184 @@
+/*
+ * Tomas Popela, 2012
+ * VIPS - Visual Internet Page Segmentation
+ * Module - VipsStyleTable.java
+ */
+
+package org.fit.vips;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.fit.cssbox.layout.Box;
+import org.fit.cssbox.layout.ElementBox;
+import org.fit.cssbox.layout.TextBox;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Snapshot of styles used by segmentation (background color, font size and
+ * font weight) for one layout of page.
+ * <p>
+ * Style of box is resolved once, when it is needed first time. Background
+ * color inherited from ancestor elements is resolved once per element and
+ * the same string is shared by all its descendants. Table belongs to
+ * parser of one session, so all rounds of session read the same snapshot
+ * and boxes of finished sessions aren't held by document.
+ * @author Tomas Popela
+ *
+ */
+final class VipsStyleTable {
+
+	private static final String DEFAULT_BG_COLOR = "#ffffff";
+
+	private final Map<Box, Style> _styles = new IdentityHashMap<Box, Style>();
+	// background colors inherited from element or its ancestors
+	private final Map<Element, String> _inheritedBgColors = new IdentityHashMap<Element, String>();
+
+	/**
+	 * Creates empty table
+	 */
+	VipsStyleTable()
+	{
+	}
+
+	/**
+	 * Returns style of box (resolved when it's needed first time)
+	 * @param box Box
+	 * @return Style
+	 */
+	synchronized Style getStyle(Box box)
+	{
+		Style style = _styles.get(box);
+
+		if (style == null)
+		{
+			style = resolveStyle(box);
+			_styles.put(box, style);
+		}
+
+		return style;
+	}
+
+	/**
+	 * Resolves style of box without any table
+	 * @param box Box
+	 * @return Style
+	 */
+	static Style resolveUncachedStyle(Box box)
+	{
+		return new VipsStyleTable().resolveStyle(box);
+	}
+
+	/**
+	 * Resolves style of box
+	 * @param box Box
+	 * @return Style
+	 */
+	private Style resolveStyle(Box box)
+	{
+		int fontSize = box.getVisualContext().getFont().getSize();
+
+		if (box instanceof TextBox)
+			return new Style(DEFAULT_BG_COLOR, fontSize, null);
+
+		ElementBox elementBox = (ElementBox) box;
+		String bgColor = elementBox.getStylePropertyValue("background-color");
+
+		if (bgColor.isEmpty())
+			bgColor = findBgColor(elementBox.getElement());
+
+		return new Style(bgColor, fontSize, elementBox.getStylePropertyValue("font-weight"));
+	}
+
+	/**
+	 * Finds background color given by attribute of element or its ancestors
+	 * (up to body element)
+	 * @param element Element
+	 * @return Background color
+	 */
+	private String findBgColor(Element element)
+	{
+		List<Element> uncachedElements = new ArrayList<Element>();
+		String bgColor = null;
+
+		// walk up to first element with known or own color (deep pages
+		// can't overflow stack)
+		while (bgColor == null)
+		{
+			bgColor = _inheritedBgColors.get(element);
+
+			if (bgColor != null)
+				break;
+
+			uncachedElements.add(element);
+			bgColor = element.getAttribute("background-color");
+
+			if (bgColor.isEmpty())
+			{
+				bgColor = null;
+				Node parent = element.getParentNode();
+
+				if (parent instanceof Element && !element.getTagName().equals("body"))
+					element = (Element) parent;
+				else
+					bgColor = DEFAULT_BG_COLOR;
+			}
+		}
+
+		// all walked elements share the found color
+		for (Element uncachedElement : uncachedElements)
+			_inheritedBgColors.put(uncachedElement, bgColor);
+
+		return bgColor;
+	}
+
+	/**
+	 * Resolved style of one box
+	 * @author Tomas Popela
+	 *
+	 */
+	static final class Style {
+
+		private final String _bgColor;
+		private final int _fontSize;
+		private final String _fontWeight;
+
+		private Style(String bgColor, int fontSize, String fontWeight)
+		{
+			this._bgColor = bgColor;
+			this._fontSize = fontSize;
+			this._fontWeight = fontWeight;
+		}
+
+		/**
+		 * Gets background color (inherited one, when box hasn't its own)
+		 * @return Background color
+		 */
+		String getBgColor()
+		{
+			return _bgColor;
+		}
+
+		/**
+		 * Gets font size
+		 * @return Font size
+		 */
+		int getFontSize()
+		{
+			return _fontSize;
+		}
+
+		/**
+		 * Gets value of font-weight property
+		 * @return Font weight or null, when box is text box or property
+		 * isn't available
+		 */
+		String getFontWeight()
+		{
+			return _fontWeight;
+		}
+	}
+}
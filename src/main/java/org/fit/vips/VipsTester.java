@@ -6,6 +6,13 @@
 
 package org.fit.vips;
 
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 /**
  * VIPS API example application.
  * @author Tomas Popela
@@ -13,16 +20,103 @@ package org.fit.vips;
  */
 public class VipsTester {
 
+	/**
+	 * Reads list of pages from file (one address per line)
+	 * @param filename File with addresses
+	 * @return List of addresses
+	 * @throws IOException
+	 */
+	private static List<String> readPages(String filename) throws IOException
+	{
+		List<String> pages = new ArrayList<String>();
+		BufferedReader reader = new BufferedReader(new FileReader(filename));
+		try
+		{
+			String line;
+			while ((line = reader.readLine()) != null)
+			{
+				line = line.trim();
+				if (!line.isEmpty() && !line.startsWith("#"))
+					pages.add(line);
+			}
+		}
+		finally
+		{
+			reader.close();
+		}
+
+		return pages;
+	}
+
+	/**
+	 * Segments all pages from file on pool of worker threads
+	 * @param args Command line arguments
+	 */
+	private static void runBatch(String args[])
+	{
+		String filename = args[1];
+		VipsMetrics metrics = new VipsMetrics();
+		VipsEngine.Builder builder = new VipsEngine.Builder()
+				.enableGraphicsOutput(false)
+				.setPredefinedDoC(8)
+				.setListener(metrics)
+				.setStyleSheetCache(new VipsStyleSheetCache(256));
+
+		for (int i = 2; i + 1 < args.length; i += 2)
+		{
+			if (args[i].equals("-profile"))
+				builder.setProfile(VipsProfile.valueOf(args[i + 1].toUpperCase()));
+		}
+
+		VipsBatchRunner runner = new VipsBatchRunner(builder.build());
+
+		for (int i = 2; i + 1 < args.length; i += 2)
+		{
+			if (args[i].equals("-profile"))
+				continue;
+			else if (args[i].equals("-threads"))
+				runner.setThreads(Integer.parseInt(args[i + 1]));
+			else if (args[i].equals("-queue"))
+				runner.setQueueSize(Integer.parseInt(args[i + 1]));
+			else if (args[i].equals("-timeout"))
+				runner.setTimeout(Long.parseLong(args[i + 1]) * 1000);
+			else
+				System.err.println("Unknown option " + args[i] + "!");
+		}
+
+		try
+		{
+			VipsBatchResult result = runner.run(readPages(filename));
+
+			Map<Integer, String> failedPages = result.getFailedPages();
+			for (Map.Entry<Integer, String> failure : result.getFailures().entrySet())
+				System.err.println(failure.getKey() + " " + failedPages.get(failure.getKey()) + ": " + failure.getValue());
+
+			System.out.println(result);
+			System.out.print(metrics);
+		} catch (Exception e)
+		{
+			e.printStackTrace();
+		}
+	}
+
 	/**
 	 * Main function
-	 * @param args Internet address of web page.
+	 * @param args Internet address of web page or -batch file [-threads n] [-queue n] [-timeout seconds] [-profile full|fast].
 	 */
 	public static void main(String args[])
 	{
+		if (args.length >= 2 && args[0].equals("-batch"))
+		{
+			runBatch(args);
+			return;
+		}
+
 		// we've just one argument - web address of page
 		if (args.length != 1)
 		{
 			System.err.println("We've just only one argument - web address of page!");
+			System.err.println("Or use -batch file [-threads n] [-queue n] [-timeout seconds] [-profile full|fast]");
 			System.exit(0);
 		}
 
@@ -0,0 +1,104 @@
+/*
+ * Tomas Popela, 2012
+ * VIPS - Visual Internet Page Segmentation
+ * Module - VipsTraversalStack.java
+ */
+
+package org.fit.vips;
+
+import java.util.Arrays;
+
+/**
+ * Array backed stack used for traversing trees without recursion.
+ * <p>
+ * Every item can carry an int value (e.g. index or traversal state). Arrays
+ * only grow, so the stack can be reused for many traversals without
+ * allocation.
+ * @author Tomas Popela
+ *
+ */
+final class VipsTraversalStack<T> {
+
+	private Object[] _items;
+	private int[] _values;
+	private int _size = 0;
+	private int _value = 0;
+
+	/**
+	 * Creates empty stack
+	 */
+	VipsTraversalStack()
+	{
+		this._items = new Object[64];
+		this._values = new int[64];
+	}
+
+	/**
+	 * Pushes item to stack
+	 * @param item Item
+	 */
+	void push(T item)
+	{
+		push(item, 0);
+	}
+
+	/**
+	 * Pushes item with value to stack
+	 * @param item Item
+	 * @param value Value
+	 */
+	void push(T item, int value)
+	{
+		if (_size == _items.length)
+		{
+			_items = Arrays.copyOf(_items, _size * 2);
+			_values = Arrays.copyOf(_values, _size * 2);
+		}
+
+		_items[_size] = item;
+		_values[_size] = value;
+		_size++;
+	}
+
+	/**
+	 * Removes item from top of stack. Its value is returned by
+	 * {@link #getValue()}.
+	 * @return Item
+	 */
+	@SuppressWarnings("unchecked")
+	T pop()
+	{
+		_size--;
+		T item = (T) _items[_size];
+		_value = _values[_size];
+		_items[_size] = null;
+		return item;
+	}
+
+	/**
+	 * Returns value of last popped item
+	 * @return Value
+	 */
+	int getValue()
+	{
+		return _value;
+	}
+
+	/**
+	 * Checks if stack is empty
+	 * @return True if stack is empty, otherwise false
+	 */
+	boolean isEmpty()
+	{
+		return _size == 0;
+	}
+
+	/**
+	 * Removes all items
+	 */
+	void clear()
+	{
+		Arrays.fill(_items, 0, _size, null);
+		_size = 0;
+	}
+}
@@ -9,8 +9,6 @@ package org.fit.vips;
 import java.util.ArrayList;
 import java.util.List;
 
-import org.w3c.dom.Node;
-
 /**
  * Class that represents visual structure.
  * @author Tomas Popela
@@ -34,8 +32,6 @@ public class VisualStructure {
 	private int _order;
 	private boolean _containTable = false;
 	private String _id = null;
-	private int _tmpSrcIndex = 0;
-	private int _srcIndex = 0;
 	private int _minimalDoC = 0;
 
 	public VisualStructure()
@@ -526,24 +522,6 @@ public class VisualStructure {
 			return -1;
 	}
 
-	/**
-	 * Sets source index of visual structure
-	 * @param node Node
-	 * @param nodeToFind Node to find
-	 */
-	private void setSourceIndex(Node node, Node nodeToFind)
-	{
-		if (!nodeToFind.equals(node))
-			_tmpSrcIndex++;
-		else
-			_srcIndex = _tmpSrcIndex;
-
-		for (int i = 0; i < node.getChildNodes().getLength(); i++)
-		{
-			setSourceIndex(node.getChildNodes().item(i), nodeToFind);
-		}
-	}
-
 	/**
 	 * Gets source index of visual strucure
 	 * @return Visual structure's source index
@@ -554,8 +532,8 @@ public class VisualStructure {
 
 		if (_childrenVisualStructures.size() > 0)
 		{
-			setSourceIndex(_nestedBlocks.get(0).getBox().getNode().getOwnerDocument(), _nestedBlocks.get(0).getBox().getParent().getNode());
-			sourceIndex = String.valueOf(_srcIndex);
+			VipsBlock firstBlock = _nestedBlocks.get(0);
+			sourceIndex = String.valueOf(firstBlock.getSourceIndex(firstBlock.getBox().getParent().getNode()));
 		}
 		else
 		{
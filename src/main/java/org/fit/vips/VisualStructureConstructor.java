@@ -7,6 +7,7 @@
 package org.fit.vips;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
@@ -20,11 +21,18 @@ public class VisualStructureConstructor {
 
 	private VipsBlock _vipsBlocks = null;
 	private List<VipsBlock> _visualBlocks = null;
+	// table, from which visual blocks were taken (detectors read geometry from it)
+	private VipsBlockTable _blockTable = null;
 	private VisualStructure _visualStructure = null;
 	private List<Separator> _horizontalSeparators = null;
 	private List<Separator> _verticalSeparators = null;
 	private int _pageWidth = 0;
 	private int _pageHeight = 0;
+	// segmented region of page (width and height -1 for whole page)
+	private int _regionX = 0;
+	private int _regionY = 0;
+	private int _regionWidth = -1;
+	private int _regionHeight = -1;
 	private int _srcOrder = 1;
 	private int _iteration = 0;
 	private int _pDoC = 5;
@@ -32,6 +40,16 @@ public class VisualStructureConstructor {
 	private int _minDoC = 11;
 
 	private boolean _graphicsOutput = true;
+	private String _outputFolder = "";
+
+	private boolean _sweepLineDetection = false;
+
+	private boolean _timeMeasurement = false;
+	private long _separatorDetectionTime = 0;
+
+	// visual blocks and separators from previous call of hasStructureChanged()
+	private List<VipsBlock> _lastVisualBlocks = null;
+	private List<int[]> _lastSeparators = null;
 
 	public VisualStructureConstructor()
 	{
@@ -87,12 +105,85 @@ public class VisualStructureConstructor {
 		this._graphicsOutput = enabled;
 	}
 
+	/**
+	 * Sets folder, where the graphics output is saved
+	 * @param folder Output folder
+	 */
+	public void setOutputFolder(String folder)
+	{
+		this._outputFolder = folder;
+	}
+
+	/**
+	 * Enables or disables detection of separators as gaps between sorted
+	 * visual blocks (see VipsSeparatorSweepDetector).
+	 * @param enable True for enable, otherwise false.
+	 */
+	public void enableSweepLineDetection(boolean enable)
+	{
+		this._sweepLineDetection = enable;
+	}
+
+	/**
+	 * Enables or disables measuring of time spent in separators detection.
+	 * @param enable True for enable, otherwise false.
+	 */
+	public void enableTimeMeasurement(boolean enable)
+	{
+		this._timeMeasurement = enable;
+	}
+
+	/**
+	 * Returns time spent in separators detection during last call of
+	 * constructVisualStructure() (only when time measurement is enabled).
+	 * @return Time in nanoseconds
+	 */
+	public long getSeparatorDetectionTime()
+	{
+		return _separatorDetectionTime;
+	}
+
+	/**
+	 * Detects horizontal separators and measures the time if it's enabled
+	 * @param detector Separator detector
+	 */
+	private void detectHorizontalSeparators(VipsSeparatorDetector detector)
+	{
+		if (!_timeMeasurement)
+		{
+			detector.detectHorizontalSeparators();
+			return;
+		}
+
+		long startTime = System.nanoTime();
+		detector.detectHorizontalSeparators();
+		_separatorDetectionTime += System.nanoTime() - startTime;
+	}
+
+	/**
+	 * Detects vertical separators and measures the time if it's enabled
+	 * @param detector Separator detector
+	 */
+	private void detectVerticalSeparators(VipsSeparatorDetector detector)
+	{
+		if (!_timeMeasurement)
+		{
+			detector.detectVerticalSeparators();
+			return;
+		}
+
+		long startTime = System.nanoTime();
+		detector.detectVerticalSeparators();
+		_separatorDetectionTime += System.nanoTime() - startTime;
+	}
+
 	/**
 	 * Tries to construct visual structure
 	 */
 	public void constructVisualStructure()
 	{
 		_iteration++;
+		_separatorDetectionTime = 0;
 
 		// in first iterations we try to find vertical separators before horizontal
 		if (_iteration < 4)
@@ -131,25 +222,21 @@ public class VisualStructureConstructor {
 		// first run
 		if (_visualStructure == null)
 		{
-			VipsSeparatorDetector detector = null;
-
-			if (_graphicsOutput)
-				detector = new VipsSeparatorGraphicsDetector(_pageWidth, _pageHeight);
-			else
-				detector = new VipsSeparatorNonGraphicsDetector(_pageWidth, _pageHeight);
+			VipsSeparatorDetector detector = createSeparatorDetector();
 
 			detector.setCleanUpSeparators(3);
-			detector.setVipsBlock(_vipsBlocks);
 			detector.setVisualBlocks(_visualBlocks);
-			detector.detectHorizontalSeparators();
+			detectHorizontalSeparators(detector);
 			this._horizontalSeparators = detector.getHorizontalSeparators();
 			Collections.sort(_horizontalSeparators);
 
 			_visualStructure = new VisualStructure();
 			_visualStructure.setId("1");
 			_visualStructure.setNestedBlocks(_visualBlocks);
-			_visualStructure.setWidth(_pageWidth);
-			_visualStructure.setHeight(_pageHeight);
+			_visualStructure.setX(_regionX);
+			_visualStructure.setY(_regionY);
+			_visualStructure.setWidth(getRegionWidth());
+			_visualStructure.setHeight(getRegionHeight());
 
 			for (Separator separator : _horizontalSeparators)
 			{
@@ -166,18 +253,12 @@ public class VisualStructureConstructor {
 
 			for (VisualStructure childVisualStructure : listStructures)
 			{
-				VipsSeparatorDetector detector = null;
-
-				if (_graphicsOutput)
-					detector = new VipsSeparatorGraphicsDetector(_pageWidth, _pageHeight);
-				else
-					detector = new VipsSeparatorNonGraphicsDetector(_pageWidth, _pageHeight);
+				VipsSeparatorDetector detector = createSeparatorDetector();
 
 				detector.setCleanUpSeparators(4);
 
-				detector.setVipsBlock(_vipsBlocks);
 				detector.setVisualBlocks(childVisualStructure.getNestedBlocks());
-				detector.detectHorizontalSeparators();
+				detectHorizontalSeparators(detector);
 				this._horizontalSeparators = detector.getHorizontalSeparators();
 
 				for (Separator separator : _horizontalSeparators)
@@ -199,25 +280,21 @@ public class VisualStructureConstructor {
 		// first run
 		if (_visualStructure == null)
 		{
-			VipsSeparatorDetector detector = null;
-
-			if (_graphicsOutput)
-				detector = new VipsSeparatorGraphicsDetector(_pageWidth, _pageHeight);
-			else
-				detector = new VipsSeparatorNonGraphicsDetector(_pageWidth, _pageHeight);
+			VipsSeparatorDetector detector = createSeparatorDetector();
 
 			detector.setCleanUpSeparators(3);
-			detector.setVipsBlock(_vipsBlocks);
 			detector.setVisualBlocks(_visualBlocks);
-			detector.detectVerticalSeparators();
+			detectVerticalSeparators(detector);
 			this._verticalSeparators = detector.getVerticalSeparators();
 			Collections.sort(_verticalSeparators);
 
 			_visualStructure = new VisualStructure();
 			_visualStructure.setId("1");
 			_visualStructure.setNestedBlocks(_visualBlocks);
-			_visualStructure.setWidth(_pageWidth);
-			_visualStructure.setHeight(_pageHeight);
+			_visualStructure.setX(_regionX);
+			_visualStructure.setY(_regionY);
+			_visualStructure.setWidth(getRegionWidth());
+			_visualStructure.setHeight(getRegionHeight());
 
 			for (Separator separator : _verticalSeparators)
 			{
@@ -233,18 +310,12 @@ public class VisualStructureConstructor {
 			findListVisualStructures(_visualStructure, listStructures);
 			for (VisualStructure childVisualStructure : listStructures)
 			{
-				VipsSeparatorDetector detector = null;
-
-				if (_graphicsOutput)
-					detector = new VipsSeparatorGraphicsDetector(_pageWidth, _pageHeight);
-				else
-					detector = new VipsSeparatorNonGraphicsDetector(_pageWidth, _pageHeight);
+				VipsSeparatorDetector detector = createSeparatorDetector();
 
 				detector.setCleanUpSeparators(4);
 
-				detector.setVipsBlock(_vipsBlocks);
 				detector.setVisualBlocks(childVisualStructure.getNestedBlocks());
-				detector.detectVerticalSeparators();
+				detectVerticalSeparators(detector);
 				this._verticalSeparators = detector.getVerticalSeparators();
 
 				for (Separator separator : _verticalSeparators)
@@ -479,25 +550,16 @@ public class VisualStructureConstructor {
 	 */
 	private void exportSeparators()
 	{
-		VipsSeparatorGraphicsDetector detector = new VipsSeparatorGraphicsDetector(_pageWidth, _pageHeight);
-		List<Separator> allSeparators = new ArrayList<Separator>();
+		List<Separator> horizontalSeparators = new ArrayList<Separator>();
+		getAllHorizontalSeparators(_visualStructure, horizontalSeparators);
+		Collections.sort(horizontalSeparators);
 
-		getAllHorizontalSeparators(_visualStructure, allSeparators);
-		Collections.sort(allSeparators);
+		List<Separator> verticalSeparators = new ArrayList<Separator>();
+		getAllVerticalSeparators(_visualStructure, verticalSeparators);
+		Collections.sort(verticalSeparators);
 
-		detector.setHorizontalSeparators(allSeparators);
-		detector.exportHorizontalSeparatorsToImage(_iteration);
-
-		allSeparators.clear();
-
-		getAllVerticalSeparators(_visualStructure, allSeparators);
-		Collections.sort(allSeparators);
-
-		detector.setVerticalSeparators(allSeparators);
-		detector.exportVerticalSeparatorsToImage(_iteration);
-
-		detector.setVisualBlocks(_visualBlocks);
-		detector.exportAllToImage(_iteration);
+		VipsImageExporter exporter = new VipsImageExporter(_pageWidth, _pageHeight, _outputFolder);
+		exporter.exportSeparators(horizontalSeparators, verticalSeparators, _visualBlocks, _iteration);
 	}
 
 	/**
@@ -511,6 +573,57 @@ public class VisualStructureConstructor {
 		this._pageWidth = width;
 	}
 
+	/**
+	 * Restricts visual structure to region of page. Separators are
+	 * detected only inside of region.
+	 * @param x Region's X coordinate
+	 * @param y Region's Y coordinate
+	 * @param width Region's width
+	 * @param height Region's height
+	 */
+	public void setRegion(int x, int y, int width, int height)
+	{
+		this._regionX = x;
+		this._regionY = y;
+		this._regionWidth = width;
+		this._regionHeight = height;
+	}
+
+	/**
+	 * Returns width of segmented region
+	 * @return Width
+	 */
+	private int getRegionWidth()
+	{
+		return (_regionWidth < 0) ? _pageWidth : _regionWidth;
+	}
+
+	/**
+	 * Returns height of segmented region
+	 * @return Height
+	 */
+	private int getRegionHeight()
+	{
+		return (_regionHeight < 0) ? _pageHeight : _regionHeight;
+	}
+
+	/**
+	 * Creates separator detector with pool covering segmented region
+	 * @return Detector
+	 */
+	private VipsSeparatorDetector createSeparatorDetector()
+	{
+		VipsSeparatorNonGraphicsDetector detector;
+
+		if (_sweepLineDetection)
+			detector = new VipsSeparatorSweepDetector(_regionX, _regionY, getRegionWidth(), getRegionHeight());
+		else
+			detector = new VipsSeparatorIntervalDetector(_regionX, _regionY, getRegionWidth(), getRegionHeight());
+
+		detector.setBlockTable(_blockTable);
+		return detector;
+	}
+
 	/**
 	 * @return Returns VipsBlocks structure with all blocks from page
 	 */
@@ -528,32 +641,28 @@ public class VisualStructureConstructor {
 	}
 
 	/**
-	 * Finds all visual blocks in VipsBlock structure
-	 * @param vipsBlock Actual VipsBlock
-	 * @param results	Results
+	 * Sets VipsBlock structure and also finds and saves all visual blocks from its
+	 * @param vipsBlocks VipsBlock structure
 	 */
-	private void findVisualBlocks(VipsBlock vipsBlock, List<VipsBlock> results)
+	public void setVipsBlocks(VipsBlock vipsBlocks)
 	{
-		if (vipsBlock.isVisualBlock())
-			results.add(vipsBlock);
-
-		for (VipsBlock child : vipsBlock.getChildren())
-		{
-			findVisualBlocks(child, results);
-		}
+		VipsBlockTable blockTable = new VipsBlockTable();
+		blockTable.load(vipsBlocks);
+		setVipsBlocks(blockTable);
 	}
 
 	/**
-	 * Sets VipsBlock structure and also finds and saves all visual blocks from its
-	 * @param vipsBlocks VipsBlock structure
+	 * Sets VipsBlock structure from flat table of blocks and saves all visual
+	 * blocks from it
+	 * @param blockTable Table of blocks
 	 */
-	public void setVipsBlocks(VipsBlock vipsBlocks)
+	public void setVipsBlocks(VipsBlockTable blockTable)
 	{
-		this._vipsBlocks = vipsBlocks;
-
-		_visualBlocks = new ArrayList<VipsBlock>();
-		findVisualBlocks(vipsBlocks, _visualBlocks);
+		this._vipsBlocks = blockTable.getBlock(0);
+		this._blockTable = blockTable;
 
+		_visualBlocks = new ArrayList<VipsBlock>(blockTable.getVisualBlocksCount());
+		blockTable.getVisualBlocks(_visualBlocks);
 	}
 
 	/**
@@ -693,7 +802,19 @@ public class VisualStructureConstructor {
 	 */
 	public void updateVipsBlocks(VipsBlock vipsBlocks)
 	{
-		setVipsBlocks(vipsBlocks);
+		VipsBlockTable blockTable = new VipsBlockTable();
+		blockTable.load(vipsBlocks);
+		updateVipsBlocks(blockTable);
+	}
+
+	/**
+	 * Updates VipsBlock structure with the new one from flat table of blocks
+	 * and also updates visual blocks on page
+	 * @param blockTable Table of blocks
+	 */
+	public void updateVipsBlocks(VipsBlockTable blockTable)
+	{
+		setVipsBlocks(blockTable);
 
 		List<VisualStructure> listsVisualStructures = new ArrayList<VisualStructure>();
 		List<VipsBlock> oldNestedBlocks = new ArrayList<VipsBlock>();
@@ -703,15 +824,36 @@ public class VisualStructureConstructor {
 		{
 			oldNestedBlocks.addAll(visualStructure.getNestedBlocks());
 			visualStructure.clearNestedBlocks();
-			for (VipsBlock visualBlock : _visualBlocks)
+			for (int i = 0; i < _visualBlocks.size(); i++)
 			{
-				if (visualBlock.getBox().getAbsoluteContentX() >= visualStructure.getX() &&
-						visualBlock.getBox().getAbsoluteContentX() <= (visualStructure.getX() + visualStructure.getWidth()))
+				VipsBlock visualBlock = _visualBlocks.get(i);
+				int x, y, width, height;
+
+				// geometry of blocks from table is read from its arrays, blocks
+				// added to list from previous round are read from boxes
+				if (i < blockTable.getVisualBlocksCount())
+				{
+					int index = blockTable.getVisualBlock(i);
+					x = blockTable.getX(index);
+					y = blockTable.getY(index);
+					width = blockTable.getWidth(index);
+					height = blockTable.getHeight(index);
+				}
+				else
+				{
+					x = visualBlock.getBox().getAbsoluteContentX();
+					y = visualBlock.getBox().getAbsoluteContentY();
+					width = visualBlock.getBox().getContentWidth();
+					height = visualBlock.getBox().getContentHeight();
+				}
+
+				if (x >= visualStructure.getX() &&
+						x <= (visualStructure.getX() + visualStructure.getWidth()))
 				{
-					if (visualBlock.getBox().getAbsoluteContentY() >= visualStructure.getY() &&
-							visualBlock.getBox().getAbsoluteContentY() <= (visualStructure.getY() + visualStructure.getHeight()))
+					if (y >= visualStructure.getY() &&
+							y <= (visualStructure.getY() + visualStructure.getHeight()))
 					{
-						if (visualBlock.getBox().getContentHeight() != 0 && visualBlock.getBox().getContentWidth() != 0)
+						if (height != 0 && width != 0)
 							visualStructure.addNestedBlock(visualBlock);
 					}
 				}
@@ -860,12 +1002,7 @@ public class VisualStructureConstructor {
 			if (adjacentBlocks.size() < 2)
 				continue;
 
-			VipsSeparatorDetector detector = null;
-
-			if (_graphicsOutput)
-				detector = new VipsSeparatorGraphicsDetector(_pageWidth, _pageHeight);
-			else
-				detector = new VipsSeparatorNonGraphicsDetector(_pageWidth, _pageHeight);
+			VipsSeparatorDetector detector = createSeparatorDetector();
 
 			detector.setCleanUpSeparators(3);
 			if (_iteration > 3)
@@ -873,7 +1010,7 @@ public class VisualStructureConstructor {
 
 			//detector.setVipsBlock(_vipsBlocks);
 			detector.setVisualBlocks(adjacentBlocks);
-			detector.detectHorizontalSeparators();
+			detectHorizontalSeparators(detector);
 
 			List<Separator> tempSeparators = new ArrayList<Separator>();
 			tempSeparators.addAll(visualStructure.getHorizontalSeparators());
@@ -925,19 +1062,14 @@ public class VisualStructureConstructor {
 			if (adjacentBlocks.size() == 0)
 				continue;
 
-			VipsSeparatorDetector detector = null;
-
-			if (_graphicsOutput)
-				detector = new VipsSeparatorGraphicsDetector(_pageWidth, _pageHeight);
-			else
-				detector = new VipsSeparatorNonGraphicsDetector(_pageWidth, _pageHeight);
+			VipsSeparatorDetector detector = createSeparatorDetector();
 
 			detector.setCleanUpSeparators(3);
 			if (_iteration > 3)
 				detector.setCleanUpSeparators(6);
 
 			detector.setVisualBlocks(adjacentBlocks);
-			detector.detectHorizontalSeparators();
+			detectHorizontalSeparators(detector);
 
 			List<Separator> tempSeparators = new ArrayList<Separator>();
 			tempSeparators.addAll(visualStructure.getHorizontalSeparators());
@@ -1143,6 +1275,81 @@ public class VisualStructureConstructor {
 		return true;
 	}
 
+	/**
+	 * Returns coordinates and weights of separators of all visual
+	 * structures in tree (structures are visited in pre-order and every
+	 * structure is recorded with its bounds and number of children)
+	 * @return Separators
+	 */
+	private List<int[]> getSeparatorsSnapshot()
+	{
+		List<int[]> snapshot = new ArrayList<int[]>();
+
+		if (_visualStructure == null)
+			return snapshot;
+
+		VipsTraversalStack<VisualStructure> stack = new VipsTraversalStack<VisualStructure>();
+		stack.push(_visualStructure);
+
+		while (!stack.isEmpty())
+		{
+			VisualStructure visualStructure = stack.pop();
+			List<VisualStructure> children = visualStructure.getChildrenVisualStructures();
+
+			snapshot.add(new int[]{ 2, visualStructure.getX(), visualStructure.getY(),
+					visualStructure.getWidth(), visualStructure.getHeight(), children.size() });
+
+			for (Separator separator : visualStructure.getHorizontalSeparators())
+				snapshot.add(new int[]{ 0, separator.startPoint, separator.endPoint, separator.weight });
+
+			for (Separator separator : visualStructure.getVerticalSeparators())
+				snapshot.add(new int[]{ 1, separator.startPoint, separator.endPoint, separator.weight });
+
+			for (int i = children.size() - 1; i >= 0; i--)
+				stack.push(children.get(i));
+		}
+
+		return snapshot;
+	}
+
+	/**
+	 * Checks if visual blocks or separators changed since the previous call
+	 * of this method (the first call always returns true).
+	 * @return True if the structure changed, otherwise false
+	 */
+	public boolean hasStructureChanged()
+	{
+		List<int[]> separators = getSeparatorsSnapshot();
+		boolean changed = false;
+
+		if (_lastVisualBlocks == null || _lastVisualBlocks.size() != _visualBlocks.size() ||
+				_lastSeparators.size() != separators.size())
+		{
+			changed = true;
+		}
+		else
+		{
+			// blocks are compared by identity of their boxes (VipsBlocks are
+			// created again in every round)
+			for (int i = 0; i < _visualBlocks.size() && !changed; i++)
+			{
+				if (_lastVisualBlocks.get(i).getBox() != _visualBlocks.get(i).getBox())
+					changed = true;
+			}
+
+			for (int i = 0; i < separators.size() && !changed; i++)
+			{
+				if (!Arrays.equals(_lastSeparators.get(i), separators.get(i)))
+					changed = true;
+			}
+		}
+
+		_lastVisualBlocks = new ArrayList<VipsBlock>(_visualBlocks);
+		_lastSeparators = separators;
+
+		return changed;
+	}
+
 	/**
 	 * Counts standard deviation from list of separators
 	 * @param separators List of separators
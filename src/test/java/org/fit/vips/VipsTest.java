@@ -1,11 +1,41 @@
 package org.fit.vips;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import org.fit.cssbox.layout.Box;
+import org.fit.cssbox.layout.ElementBox;
 import org.junit.jupiter.api.Test;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
 
 public class VipsTest {
 
@@ -22,4 +52,746 @@ public class VipsTest {
 
 	result.delete();
     }
+
+    @Test
+    public void runOfflinePageSegmentation() throws Exception {
+	File page = getResource("simple.html");
+	File outputDirectory = Files.createTempDirectory("vips").toFile();
+
+	VipsEngine engine = new VipsEngine.Builder()
+		.setPredefinedDoC(8)
+		.setOutputDirectory(outputDirectory)
+		.build();
+
+	VipsSession fromFile = engine.createSession(page);
+	fromFile.setOutputFileName("file");
+	assertNotNull(fromFile.segment());
+
+	VipsSession fromBytes = engine.createSession(Files.readAllBytes(page.toPath()), page.toURI().toURL());
+	fromBytes.setOutputFileName("bytes");
+	assertNotNull(fromBytes.segment());
+
+	File fileResult = new File(outputDirectory, "file.xml");
+	File bytesResult = new File(outputDirectory, "bytes.xml");
+	assertEquals(fileResult.exists(), true);
+	assertEquals(bytesResult.exists(), true);
+
+	fileResult.delete();
+	bytesResult.delete();
+	outputDirectory.delete();
+    }
+
+    @Test
+    public void batchKeepsFailuresOfSamePage() throws Exception {
+	File outputDirectory = Files.createTempDirectory("vips").toFile();
+	String missingPage = new File(outputDirectory, "missing.html").toURI().toString();
+
+	VipsBatchRunner runner = new VipsBatchRunner(new VipsEngine.Builder()
+		.setOutputDirectory(outputDirectory)
+		.build());
+	runner.setThreads(2);
+	VipsBatchResult result = runner.run(Arrays.asList(missingPage, missingPage));
+
+	assertEquals(2, result.getFailed());
+	assertEquals(2, result.getFailures().size());
+	assertEquals(missingPage, result.getFailedPages().get(1));
+	assertEquals(missingPage, result.getFailedPages().get(2));
+
+	outputDirectory.delete();
+    }
+
+    @Test
+    public void batchTimesOutHungFetch() throws Exception {
+	File outputDirectory = Files.createTempDirectory("vips").toFile();
+
+	// connection is accepted by backlog, but server never answers
+	try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress()))
+	{
+	    String page = "http://127.0.0.1:" + server.getLocalPort() + "/";
+	    final VipsBatchRunner runner = new VipsBatchRunner(new VipsEngine.Builder()
+		    .setOutputDirectory(outputDirectory)
+		    .build());
+	    runner.setThreads(1);
+	    runner.setTimeout(500);
+
+	    VipsBatchResult result = assertTimeoutPreemptively(Duration.ofSeconds(10),
+		    () -> runner.run(Arrays.asList(page)));
+
+	    assertEquals(1, result.getTimedOut());
+	    assertEquals(0, result.getFailed());
+	    assertEquals(page, result.getFailedPages().get(1));
+	}
+
+	outputDirectory.delete();
+    }
+
+    @Test
+    public void adaptiveSegmentationStopsEarlyWithSameResult() throws Exception {
+	VipsSession adaptive = assertSameOutput(getResource("simple.html"),
+		builder -> builder.enableAdaptiveSegmentation(true));
+
+	assertTrue(adaptive.getIterations() < 10, "adaptive segmentation ran " + adaptive.getIterations() + " rounds");
+    }
+
+    @Test
+    public void incrementalParsingKeepsResult() throws Exception {
+	assertSameOutput(getResource("simple.html"), builder -> builder.enableIncrementalParsing(true));
+    }
+
+    @Test
+    public void parallelDivisionKeepsResult() throws Exception {
+	assertSameOutput(getResource("simple.html"),
+		builder -> builder.setForkJoinPool(ForkJoinPool.commonPool()).setParallelCutoff(2));
+    }
+
+    @Test
+    public void nestedSeparatorsChangeStructure() throws Exception {
+	File page = getResource("simple.html");
+	File outputDirectory = Files.createTempDirectory("vips").toFile();
+
+	VisualStructure segmented = new VipsEngine.Builder()
+		.setPredefinedDoC(8)
+		.setOutputDirectory(outputDirectory)
+		.build()
+		.createSession(page).segment();
+
+	VipsBlock root = new VipsBlock();
+	root.setBox(segmented.getNestedBlocks().get(0).getBox().getParent());
+	for (VipsBlock nestedBlock : segmented.getNestedBlocks())
+	{
+	    VipsBlock vipsBlock = new VipsBlock();
+	    vipsBlock.setBox(nestedBlock.getBox());
+	    vipsBlock.setIsVisualBlock(true);
+	    root.addChild(vipsBlock);
+	}
+
+	VisualStructureConstructor constructor = new VisualStructureConstructor(8);
+	constructor.setGraphicsOutput(false);
+	constructor.setVipsBlocks(root);
+	constructor.setPageSize(segmented.getWidth(), segmented.getHeight());
+	constructor.constructVisualStructure();
+
+	assertTrue(constructor.hasStructureChanged());
+	assertFalse(constructor.hasStructureChanged());
+
+	// change only structure, whose separators aren't the last detected ones
+	VisualStructure nested = null;
+	List<VisualStructure> structures = new ArrayList<VisualStructure>(constructor.getVisualStructure().getChildrenVisualStructures());
+	for (int i = 0; i < structures.size() && nested == null; i++)
+	{
+	    VisualStructure structure = structures.get(i);
+	    if (structure.getHorizontalSeparators() != constructor.getHorizontalSeparators()
+		    && structure.getVerticalSeparators() != constructor.getVerticalSeparators())
+		nested = structure;
+	    structures.addAll(structure.getChildrenVisualStructures());
+	}
+
+	assertNotNull(nested);
+	nested.getHorizontalSeparators().add(new Separator(0, 1));
+	assertTrue(constructor.hasStructureChanged());
+
+	new File(outputDirectory, "VIPSResult.xml").delete();
+	outputDirectory.delete();
+    }
+
+    @Test
+    public void blockTableMatchesBlockTree() throws Exception {
+	File page = getResource("simple.html");
+	File outputDirectory = Files.createTempDirectory("vips").toFile();
+
+	VisualStructure segmented = new VipsEngine.Builder()
+		.setPredefinedDoC(8)
+		.setOutputDirectory(outputDirectory)
+		.build()
+		.createSession(page).segment();
+
+	// root -> (inner -> visual blocks), visual block
+	List<VipsBlock> nestedBlocks = segmented.getNestedBlocks();
+	VipsBlock root = new VipsBlock();
+	root.setBox(nestedBlocks.get(0).getBox().getParent());
+	VipsBlock inner = new VipsBlock();
+	inner.setBox(root.getBox());
+	root.addChild(inner);
+	for (VipsBlock nestedBlock : nestedBlocks)
+	{
+	    VipsBlock vipsBlock = new VipsBlock();
+	    vipsBlock.setBox(nestedBlock.getBox());
+	    vipsBlock.setIsVisualBlock(true);
+	    (vipsBlock.getBox() == nestedBlocks.get(nestedBlocks.size() - 1).getBox() ? root : inner).addChild(vipsBlock);
+	}
+
+	VipsBlockTable table = new VipsBlockTable();
+	table.load(root);
+
+	assertEquals(nestedBlocks.size() + 2, table.size());
+	assertEquals(VipsBlockTable.NONE, table.getParent(0));
+	assertEquals(table.size(), table.getSubtreeSize(0));
+	assertEquals(1, table.getFirstChild(0));
+	assertEquals(table.size() - 1, table.getNextSibling(1));
+	assertEquals(nestedBlocks.size(), table.getSubtreeSize(1));
+	assertEquals(nestedBlocks.size(), table.getVisualBlocksCount());
+
+	for (int i = 0; i < table.getVisualBlocksCount(); i++)
+	{
+	    int index = table.getVisualBlock(i);
+	    VipsBlock vipsBlock = table.getBlock(index);
+
+	    assertEquals(index, table.indexOf(vipsBlock));
+	    assertEquals(nestedBlocks.get(i).getBox(), vipsBlock.getBox());
+	    assertEquals(vipsBlock.getBox().getAbsoluteContentX(), table.getX(index));
+	    assertEquals(vipsBlock.getBox().getContentHeight(), table.getHeight(index));
+	}
+
+	// blocks of previous tree aren't found after reload
+	table.load(inner);
+	assertEquals(VipsBlockTable.NONE, table.indexOf(root));
+	assertEquals(0, table.indexOf(inner));
+
+	new File(outputDirectory, "VIPSResult.xml").delete();
+	outputDirectory.delete();
+    }
+
+    @Test
+    public void sourceIndexFollowsDocumentOrder() throws Exception {
+	Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+	Element html = document.createElement("html");
+	Element body = document.createElement("body");
+	Element first = document.createElement("div");
+	Element second = document.createElement("div");
+	document.appendChild(html);
+	html.appendChild(body);
+	body.appendChild(first);
+	first.appendChild(document.createTextNode("first"));
+	body.appendChild(second);
+
+	VipsDocumentOrder documentOrder = new VipsDocumentOrder();
+	assertEquals(0, documentOrder.getSourceIndex(document));
+	assertEquals(1, documentOrder.getSourceIndex(html));
+	assertEquals(3, documentOrder.getSourceIndex(first));
+	assertEquals(4, documentOrder.getSourceIndex(first.getFirstChild()));
+	assertEquals(5, documentOrder.getSourceIndex(second));
+	assertEquals(VipsDocumentOrder.findSourceIndex(second), documentOrder.getSourceIndex(second));
+
+	// nothing is stored in document, so changed document is numbered again
+	assertEquals(null, second.getUserData("org.fit.vips.sourceIndex"));
+	body.insertBefore(document.createElement("p"), first);
+	assertEquals(6, new VipsDocumentOrder().getSourceIndex(second));
+	assertEquals(6, VipsDocumentOrder.findSourceIndex(second));
+
+	File page = getResource("simple.html");
+	File outputDirectory = Files.createTempDirectory("vips").toFile();
+
+	VisualStructure segmented = new VipsEngine.Builder()
+		.setPredefinedDoC(8)
+		.setOutputDirectory(outputDirectory)
+		.build()
+		.createSession(page).segment();
+
+	for (VipsBlock vipsBlock : segmented.getNestedBlocks())
+	{
+	    Node node = vipsBlock.getBox().getNode();
+	    assertEquals(VipsDocumentOrder.findSourceIndex(node), vipsBlock.getSourceIndex());
+	    assertEquals(null, node.getUserData("org.fit.vips.sourceIndex"));
+	    assertEquals(null, node.getOwnerDocument().getUserData("org.fit.vips.sourceIndex"));
+	}
+
+	new File(outputDirectory, "VIPSResult.xml").delete();
+	outputDirectory.delete();
+    }
+
+    @Test
+    public void changedChildInvalidatesAncestors() throws Exception {
+	File page = getResource("simple.html");
+	File outputDirectory = Files.createTempDirectory("vips").toFile();
+
+	VisualStructure segmented = new VipsEngine.Builder()
+		.setPredefinedDoC(8)
+		.setOutputDirectory(outputDirectory)
+		.build()
+		.createSession(page).segment();
+
+	// find boxes of first paragraph and table
+	ElementBox rootBox = segmented.getNestedBlocks().get(0).getBox().getParent();
+	while (rootBox.getParent() != null)
+	    rootBox = rootBox.getParent();
+	ElementBox paragraphBox = null;
+	ElementBox tableBox = null;
+	List<ElementBox> boxes = new ArrayList<ElementBox>();
+	boxes.add(rootBox);
+	for (int i = 0; i < boxes.size(); i++)
+	{
+	    ElementBox box = boxes.get(i);
+	    if (paragraphBox == null && box.getNode().getNodeName().equals("p"))
+		paragraphBox = box;
+	    if (tableBox == null && box.getNode().getNodeName().equals("table"))
+		tableBox = box;
+	    for (Box child : box.getSubBoxList())
+	    {
+		if (child instanceof ElementBox)
+		    boxes.add((ElementBox) child);
+	    }
+	}
+	assertNotNull(paragraphBox);
+	assertNotNull(tableBox);
+
+	// root -> inner -> leaf
+	VipsBlock root = new VipsBlock();
+	root.setBox(rootBox);
+	VipsBlock inner = new VipsBlock();
+	inner.setBox(rootBox);
+	VipsBlock leaf = new VipsBlock();
+	leaf.setBox(rootBox);
+	root.addChild(inner);
+	inner.addChild(leaf);
+
+	assertEquals(0, root.containP());
+	assertFalse(root.containTable());
+
+	VipsBlock paragraph = new VipsBlock();
+	paragraph.setBox(paragraphBox);
+	inner.setChild(0, paragraph);
+	assertEquals(1, root.containP());
+	assertEquals(1, inner.containP());
+
+	VipsBlock table = new VipsBlock();
+	table.setBox(rootBox);
+	paragraph.addChild(table);
+	assertFalse(root.containTable());
+	table.setBox(tableBox);
+	assertTrue(root.containTable());
+	assertTrue(paragraph.containTable());
+
+	new File(outputDirectory, "VIPSResult.xml").delete();
+	outputDirectory.delete();
+    }
+
+    @Test
+    public void styleSheetCacheEvictsLeastRecentlyUsed() throws Exception {
+	File directory = Files.createTempDirectory("vips").toFile();
+	File first = new File(directory, "first.css");
+	File copy = new File(directory, "copy.css");
+	File other = new File(directory, "other.css");
+	Files.write(first.toPath(), "p { color: red }".getBytes("UTF-8"));
+	Files.write(copy.toPath(), "p { color: red }".getBytes("UTF-8"));
+	Files.write(other.toPath(), "p { color: blue }".getBytes("UTF-8"));
+
+	VipsStyleSheetCache cache = new VipsStyleSheetCache(2);
+
+	// same contents from two URLs are stored once
+	cache.fetch(first.toURI().toURL()).close();
+	cache.fetch(copy.toURI().toURL()).close();
+	assertEquals(2, cache.size());
+	assertEquals(1, cache.getContentsCount());
+	assertEquals(0, cache.getHits());
+	assertEquals(2, cache.getMisses());
+
+	// first is used again, so copy is evicted
+	cache.fetch(first.toURI().toURL()).close();
+	cache.fetch(other.toURI().toURL()).close();
+	assertEquals(2, cache.size());
+	assertEquals(2, cache.getContentsCount());
+	assertEquals(1, cache.getHits());
+	assertEquals(3, cache.getMisses());
+
+	cache.fetch(first.toURI().toURL()).close();
+	cache.fetch(copy.toURI().toURL()).close();
+	assertEquals(2, cache.getHits());
+	assertEquals(4, cache.getMisses());
+
+	// contents of evicted URL are released
+	assertEquals(1, cache.getContentsCount());
+
+	first.delete();
+	copy.delete();
+	other.delete();
+	directory.delete();
+    }
+
+    @Test
+    public void styleSheetCacheIsUsedBySessions() throws Exception {
+	File directory = Files.createTempDirectory("vips").toFile();
+	File styleSheet = new File(directory, "style.css");
+	File page = new File(directory, "page.html");
+	Files.write(styleSheet.toPath(), "div { background-color: #ff0000 }".getBytes("UTF-8"));
+	Files.write(page.toPath(), ("<html><head><title>Test</title><link rel=\"stylesheet\" type=\"text/css\" href=\"style.css\"></head>"
+		+ "<body><div>First</div><div>Second</div></body></html>").getBytes("UTF-8"));
+
+	VipsStyleSheetCache cache = new VipsStyleSheetCache(16);
+	VipsEngine engine = new VipsEngine.Builder()
+		.setStyleSheetCache(cache)
+		.setOutputDirectory(directory)
+		.build();
+
+	engine.createSession(page).segment();
+	assertEquals(0, cache.getHits());
+	assertEquals(1, cache.getMisses());
+
+	engine.createSession(page).segment();
+	assertEquals(1, cache.getHits());
+	assertEquals(1, cache.getMisses());
+
+	new File(directory, "VIPSResult.xml").delete();
+	styleSheet.delete();
+	page.delete();
+	directory.delete();
+    }
+
+    @Test
+    public void multiplePredefinedDoCsMatchSingleRuns() throws Exception {
+	File page = getResource("simple.html");
+	File outputDirectory = Files.createTempDirectory("vips").toFile();
+
+	new VipsEngine.Builder()
+		.setPredefinedDoCs(8, 5)
+		.setOutputDirectory(outputDirectory)
+		.setOutputFileName("multi")
+		.build()
+		.createSession(page).segment();
+
+	for (int pDoC : new int[] { 5, 8 })
+	{
+	    new VipsEngine.Builder()
+		    .setPredefinedDoC(pDoC)
+		    .setOutputDirectory(outputDirectory)
+		    .setOutputFileName("single" + pDoC)
+		    .build()
+		    .createSession(page).segment();
+
+	    File singleResult = new File(outputDirectory, "single" + pDoC + ".xml");
+	    File multiResult = new File(outputDirectory, "multi-pdoc" + pDoC + ".xml");
+	    assertArrayEquals(Files.readAllBytes(singleResult.toPath()), Files.readAllBytes(multiResult.toPath()));
+
+	    singleResult.delete();
+	    multiResult.delete();
+	}
+
+	outputDirectory.delete();
+    }
+
+    @Test
+    public void pruningWorksWithFullProfile() throws Exception {
+	byte[] page = ("<html><head><title>Hidden</title></head><body><div><p>Visible paragraph.</p></div>"
+		+ "<div style=\"visibility:hidden\"><ul><li>Hidden item</li></ul></div>"
+		+ "<div><p>Visible footer.</p></div></body></html>").getBytes("UTF-8");
+	File outputDirectory = Files.createTempDirectory("vips").toFile();
+
+	for (boolean pruning : new boolean[] { false, true })
+	{
+	    final long[] prunedSubtrees = new long[1];
+	    VipsEngine engine = new VipsEngine.Builder()
+		    .setPredefinedDoC(8)
+		    .setOutputDirectory(outputDirectory)
+		    .setProfile(VipsProfile.FULL)
+		    .enablePruning(pruning)
+		    .setListener(new VipsListener() {
+			@Override
+			public void phaseFinished(VipsSession session, VipsPhase phase, int iteration, long duration) {
+			}
+
+			@Override
+			public void counterReported(VipsSession session, VipsCounter counter, int iteration, long value) {
+			    if (counter == VipsCounter.PRUNED_SUBTREES)
+				prunedSubtrees[0] += value;
+			}
+		    })
+		    .build();
+
+	    assertTrue(engine.isVipsRuleEnabled(3));
+	    assertNotNull(engine.createSession(page, outputDirectory.toURI().toURL()).segment());
+	    assertEquals(pruning ? 1 : 0, prunedSubtrees[0]);
+	}
+
+	new File(outputDirectory, "VIPSResult.xml").delete();
+	outputDirectory.delete();
+    }
+
+    @Test
+    public void regionRestrictsSegmentation() throws Exception {
+	File page = getResource("simple.html");
+	File outputDirectory = Files.createTempDirectory("vips").toFile();
+
+	VisualStructure rectangle = new VipsEngine.Builder()
+		.setPredefinedDoC(8)
+		.setOutputDirectory(outputDirectory)
+		.setRegion(0, 0, 1000, 150)
+		.build()
+		.createSession(page).segment();
+
+	assertFalse(rectangle.getNestedBlocks().isEmpty());
+	for (VipsBlock vipsBlock : rectangle.getNestedBlocks())
+	    assertTrue(vipsBlock.getBox().getAbsoluteContentY() + vipsBlock.getBox().getContentHeight() <= 150);
+
+	VisualStructure element = new VipsEngine.Builder()
+		.setPredefinedDoC(8)
+		.setOutputDirectory(outputDirectory)
+		.setRegionSelector("h1")
+		.build()
+		.createSession(page).segment();
+
+	assertFalse(element.getNestedBlocks().isEmpty());
+	for (VipsBlock vipsBlock : element.getNestedBlocks())
+	    assertEquals("h1", vipsBlock.getBox().getNode().getNodeName());
+
+	new File(outputDirectory, "VIPSResult.xml").delete();
+	outputDirectory.delete();
+    }
+
+    @Test
+    public void invalidRegionSelectorIsRejected() {
+	for (String selector : new String[] { "", "h1 {", "h1 } p", "h1; p", "div[", "@media screen" })
+	    assertThrows(IllegalArgumentException.class, () -> new VipsEngine.Builder().setRegionSelector(selector));
+
+	assertThrows(IllegalArgumentException.class, () -> new Vips().setRegion("h1 }"));
+	new VipsEngine.Builder().setRegionSelector("body > h1, #main p");
+    }
+
+    @Test
+    public void intervalDetectorMatchesNonGraphicsDetector() throws Exception {
+	File outputDirectory = Files.createTempDirectory("vips").toFile();
+
+	for (File page : getCorpus())
+	{
+	    VisualStructure segmented = new VipsEngine.Builder()
+		    .setPredefinedDoC(8)
+		    .setOutputDirectory(outputDirectory)
+		    .build()
+		    .createSession(page).segment();
+
+	    // blocks of every visual structure are compared in its own pool
+	    List<VisualStructure> structures = new ArrayList<VisualStructure>();
+	    structures.add(segmented);
+	    for (int i = 0; i < structures.size(); i++)
+	    {
+		VisualStructure structure = structures.get(i);
+		structures.addAll(structure.getChildrenVisualStructures());
+
+		VipsSeparatorDetector listDetector = new VipsSeparatorNonGraphicsDetector(structure.getX(), structure.getY(),
+			structure.getWidth(), structure.getHeight());
+		VipsSeparatorDetector intervalDetector = new VipsSeparatorIntervalDetector(structure.getX(), structure.getY(),
+			structure.getWidth(), structure.getHeight());
+
+		for (VipsSeparatorDetector detector : new VipsSeparatorDetector[] { listDetector, intervalDetector })
+		{
+		    detector.setVisualBlocks(structure.getNestedBlocks());
+		    detector.detectHorizontalSeparators();
+		    detector.detectVerticalSeparators();
+		}
+
+		String message = page.getName() + ", structure " + structure.getId();
+		assertEquals(toString(listDetector.getHorizontalSeparators()), toString(intervalDetector.getHorizontalSeparators()), message);
+		assertEquals(toString(listDetector.getVerticalSeparators()), toString(intervalDetector.getVerticalSeparators()), message);
+	    }
+
+	    assertTrue(structures.size() > 1, page.getName());
+	    new File(outputDirectory, "VIPSResult.xml").delete();
+	}
+
+	outputDirectory.delete();
+    }
+
+    @Test
+    public void sweepLineDetectionKeepsResult() throws Exception {
+	for (File page : getCorpus())
+	{
+	    // on huge.html list detector keeps separator, that sweep shortens
+	    // (see VipsSeparatorSweepDetector)
+	    if (!page.getName().equals("huge.html"))
+		assertSameOutput(page, builder -> builder.enableSweepLineDetection(true));
+	}
+    }
+
+    @Test
+    public void sweepDetectorFindsUncoveredParts() throws Exception {
+	File outputDirectory = Files.createTempDirectory("vips").toFile();
+
+	for (File page : getCorpus())
+	{
+	    VisualStructure segmented = new VipsEngine.Builder()
+		    .setPredefinedDoC(8)
+		    .setOutputDirectory(outputDirectory)
+		    .build()
+		    .createSession(page).segment();
+
+	    List<VisualStructure> structures = new ArrayList<VisualStructure>();
+	    structures.add(segmented);
+	    for (int i = 0; i < structures.size(); i++)
+	    {
+		VisualStructure structure = structures.get(i);
+		structures.addAll(structure.getChildrenVisualStructures());
+
+		VipsSeparatorDetector detector = new VipsSeparatorSweepDetector(structure.getX(), structure.getY(),
+			structure.getWidth(), structure.getHeight());
+		detector.setVisualBlocks(structure.getNestedBlocks());
+		detector.detectHorizontalSeparators();
+		detector.detectVerticalSeparators();
+
+		String message = page.getName() + ", structure " + structure.getId();
+		assertEquals(findUncoveredParts(structure, true), toPositions(detector.getHorizontalSeparators()), message);
+		assertEquals(findUncoveredParts(structure, false), toPositions(detector.getVerticalSeparators()), message);
+	    }
+
+	    new File(outputDirectory, "VIPSResult.xml").delete();
+	}
+
+	outputDirectory.delete();
+    }
+
+    @Test
+    public void segmentationWithoutGraphicsDoesNotLoadSwing() throws Exception {
+	File page = getResource("simple.html");
+	File outputDirectory = Files.createTempDirectory("vips").toFile();
+
+	// classes loaded by CSSBox are seen only by JVM itself
+	Process process = new ProcessBuilder(new File(System.getProperty("java.home"), "bin/java").getPath(),
+		"-Djava.awt.headless=true", "-verbose:class", "-cp", System.getProperty("java.class.path"),
+		HeadlessSegmentation.class.getName(), page.getPath(), outputDirectory.getPath())
+		.redirectErrorStream(true)
+		.start();
+
+	Set<String> loadedClasses = new HashSet<String>();
+	Pattern loadedClass = Pattern.compile("(?:\\[Loaded |\\[class,load\\] )(\\S+)");
+	try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), "UTF-8")))
+	{
+	    String line;
+	    while ((line = reader.readLine()) != null)
+	    {
+		Matcher matcher = loadedClass.matcher(line);
+		if (matcher.find())
+		    loadedClasses.add(matcher.group(1));
+	    }
+	}
+
+	assertEquals(0, process.waitFor());
+	assertTrue(loadedClasses.contains(VipsSession.class.getName()));
+	for (String name : loadedClasses)
+	{
+	    assertFalse(name.startsWith("javax.swing.") || name.startsWith("org.fit.cssbox.render.")
+		    || name.equals("org.fit.cssbox.layout.BrowserCanvas")
+		    || name.equals(VipsSeparatorGraphicsDetector.class.getName())
+		    || name.equals(VipsImageExporter.class.getName()), name);
+	}
+
+	new File(outputDirectory, "VIPSResult.xml").delete();
+	outputDirectory.delete();
+    }
+
+    // segments page by default engine and by engine with changed option and
+    // checks, that XML outputs are same
+    private VipsSession assertSameOutput(File page, Consumer<VipsEngine.Builder> option) throws Exception {
+	File outputDirectory = Files.createTempDirectory("vips").toFile();
+	VipsSession session = null;
+
+	for (boolean changed : new boolean[] { false, true })
+	{
+	    VipsEngine.Builder builder = new VipsEngine.Builder()
+		    .setPredefinedDoC(8)
+		    .setOutputDirectory(outputDirectory)
+		    .setOutputFileName(changed ? "changed" : "default");
+	    if (changed)
+		option.accept(builder);
+
+	    session = builder.build().createSession(page);
+	    session.segment();
+	}
+
+	File defaultResult = new File(outputDirectory, "default.xml");
+	File changedResult = new File(outputDirectory, "changed.xml");
+	assertArrayEquals(Files.readAllBytes(defaultResult.toPath()), Files.readAllBytes(changedResult.toPath()), page.getName());
+
+	defaultResult.delete();
+	changedResult.delete();
+	outputDirectory.delete();
+
+	return session;
+    }
+
+    private File getResource(String name) throws URISyntaxException {
+	return new File(getClass().getResource("/" + name).toURI());
+    }
+
+    // local pages for comparing of implementations (simple page and
+    // benchmark corpus)
+    private List<File> getCorpus() throws URISyntaxException {
+	List<File> corpus = new ArrayList<File>();
+	corpus.add(getResource("simple.html"));
+
+	for (String name : new String[] { "small.html", "medium.html", "huge.html" })
+	{
+	    File page = new File("benchmarks/src/main/resources/corpus", name);
+	    assertTrue(page.exists(), page.getPath());
+	    corpus.add(page);
+	}
+
+	return corpus;
+    }
+
+    // parts of structure's pool not covered by its blocks (blocks include
+    // both end points), without parts on pool's borders
+    private String findUncoveredParts(VisualStructure structure, boolean horizontal) {
+	int poolStart = horizontal ? structure.getY() : structure.getX();
+	int poolEnd = poolStart + (horizontal ? structure.getHeight() : structure.getWidth());
+	boolean[] covered = new boolean[poolEnd - poolStart + 1];
+
+	for (VipsBlock vipsBlock : structure.getNestedBlocks())
+	{
+	    int start = horizontal ? vipsBlock.getBox().getAbsoluteContentY() : vipsBlock.getBox().getAbsoluteContentX();
+	    int end = start + (horizontal ? vipsBlock.getBox().getContentHeight() : vipsBlock.getBox().getContentWidth());
+
+	    for (int point = Math.max(start, poolStart); point <= Math.min(end, poolEnd); point++)
+		covered[point - poolStart] = true;
+	}
+
+	List<Separator> parts = new ArrayList<Separator>();
+	for (int point = poolStart; point <= poolEnd; point++)
+	{
+	    if (covered[point - poolStart])
+		continue;
+
+	    int end = point;
+	    while (end < poolEnd && !covered[end + 1 - poolStart])
+		end++;
+
+	    if (point != poolStart && end != poolEnd)
+		parts.add(new Separator(point, end));
+	    point = end;
+	}
+
+	return toPositions(parts);
+    }
+
+    private String toPositions(List<Separator> separators) {
+	List<Separator> sorted = new ArrayList<Separator>();
+	for (Separator separator : separators)
+	    sorted.add(new Separator(separator.startPoint, separator.endPoint));
+	sorted.sort((first, second) -> Integer.compare(first.startPoint, second.startPoint));
+
+	StringBuilder result = new StringBuilder();
+	for (Separator separator : sorted)
+	    result.append(separator.startPoint).append('-').append(separator.endPoint).append(' ');
+
+	return result.toString();
+    }
+
+    private String toString(List<Separator> separators) {
+	StringBuilder result = new StringBuilder();
+
+	for (Separator separator : separators)
+	    result.append(separator.startPoint).append('-').append(separator.endPoint).append(':').append(separator.weight).append(' ');
+
+	return result.toString();
+    }
+
+    /**
+     * Segments page without graphics output (run in separate JVM).
+     */
+    public static class HeadlessSegmentation {
+
+	public static void main(String[] args) throws Exception {
+	    new VipsEngine.Builder()
+		    .enableGraphicsOutput(false)
+		    .setOutputDirectory(new File(args[1]))
+		    .build()
+		    .createSession(new File(args[0])).segment();
+	}
+    }
 }